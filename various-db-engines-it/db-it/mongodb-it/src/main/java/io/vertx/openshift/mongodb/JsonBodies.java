@@ -0,0 +1,55 @@
+package io.vertx.openshift.mongodb;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.DecodeException;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.openshift.mongodb.exceptions.UnprocessableEntityException;
+import io.vertx.openshift.mongodb.exceptions.UnsupportedMediaTypeException;
+
+/**
+ * Validating parsers of the request bodies. The body is decoded once, straight from its bytes, and checked while the
+ * decoded value is at hand, so a large bulk payload is only read once.
+ */
+public final class JsonBodies {
+
+  private JsonBodies() {
+  }
+
+  /**
+   * @throws UnsupportedMediaTypeException if the body is empty or isn't a JSON object
+   */
+  public static JsonObject object(Buffer body) throws UnsupportedMediaTypeException {
+    if (body == null || body.length() == 0) {
+      throw new UnsupportedMediaTypeException("Payload isn't set");
+    }
+    try {
+      return new JsonObject(body);
+    } catch (DecodeException | ClassCastException e) {
+      throw new UnsupportedMediaTypeException("Payload isn't json object");
+    }
+  }
+
+  /**
+   * @throws UnsupportedMediaTypeException if the body is empty or isn't a JSON array
+   * @throws UnprocessableEntityException  if an element of the array isn't a JSON object
+   */
+  public static JsonArray arrayOfObjects(Buffer body) throws UnsupportedMediaTypeException,
+    UnprocessableEntityException {
+    if (body == null || body.length() == 0) {
+      throw new UnsupportedMediaTypeException("Payload isn't set");
+    }
+    JsonArray array;
+    try {
+      array = new JsonArray(body);
+    } catch (DecodeException | ClassCastException e) {
+      throw new UnsupportedMediaTypeException("Payload isn't json array");
+    }
+    for (int i = 0; i < array.size(); i++) {
+      if (!(array.getValue(i) instanceof JsonObject)) {
+        throw new UnprocessableEntityException("Item " + i + " isn't a json object");
+      }
+    }
+    return array;
+  }
+}
@@ -4,20 +4,39 @@ package io.vertx.openshift.mongodb;
 import io.vertx.core.AbstractVerticle;
 import io.vertx.core.CompositeFuture;
 import io.vertx.core.Future;
+import io.vertx.core.buffer.Buffer;
 import io.vertx.core.http.HttpMethod;
 import io.vertx.core.http.HttpServer;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.json.DecodeException;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
+import io.vertx.core.parsetools.RecordParser;
+import io.vertx.core.streams.ReadStream;
+import io.vertx.ext.mongo.IndexOptions;
 import io.vertx.ext.mongo.MongoClient;
+import io.vertx.ext.mongo.MongoClientBulkWriteResult;
 import io.vertx.ext.web.Router;
 import io.vertx.ext.web.RoutingContext;
 import io.vertx.ext.web.handler.BodyHandler;
+import io.vertx.openshift.mongodb.exceptions.PartialBulkWriteException;
 import io.vertx.openshift.mongodb.exceptions.UnprocessableEntityException;
 import io.vertx.openshift.mongodb.exceptions.UnsupportedMediaTypeException;
+import io.vertx.openshift.mongodb.models.CachedMongoDBVegetableStore;
 import io.vertx.openshift.mongodb.models.MongoDBVegetableStore;
-
+import io.vertx.openshift.mongodb.models.PageToken;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Objects;
+import java.util.Set;
+import java.util.regex.Pattern;
 
 /**
  * @author Adam Koniar (akoniar@redhat.com) on 11/04/18.
@@ -25,13 +44,66 @@ import java.util.Objects;
 public class MongoDBVerticle extends AbstractVerticle {
 
   protected MongoDBVegetableStore store;
-  private static final int PAGE_LIMIT = 5;
+  private static final int DEFAULT_PAGE_SIZE = 5;
+  private static final int MAX_PAGE_SIZE = 1000;
+  private static final String NDJSON = "application/x-ndjson";
+  private static final Pattern HEX_ID = Pattern.compile("[0-9a-fA-F]+");
+  /**
+   * A field name, or a dotted path to a field of an embedded document.
+   */
+  private static final Pattern FIELD_PATH = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*(\\.[A-Za-z_][A-Za-z0-9_]*)*");
+  private static final int MAX_FIELDS = 50;
+  /**
+   * The aggregation stages the clients can run, none of them writes or reads another collection.
+   */
+  private static final Set<String> AGGREGATE_STAGES = new HashSet<>(Arrays.asList("$match", "$group", "$sort",
+    "$limit"));
+  private static final int MAX_AGGREGATE_STAGES = 20;
+  /**
+   * Maximum size, in bytes, of an imported document.
+   */
+  private static final int MAX_IMPORT_LINE = 1024 * 1024;
+  /**
+   * Whether the documents are served from a copy kept in sync by a change stream, which needs a replica set of
+   * MongoDB 3.6 or later. The whole collection is then held in memory.
+   */
+  protected boolean documentCache = Boolean.valueOf(System.getenv().getOrDefault("documentCache", "false"));
+  /**
+   * Time, in milliseconds, the change stream can go without answering before the documents are read from the
+   * database again.
+   */
+  protected long documentCacheMaxLag = Long.valueOf(System.getenv().getOrDefault("documentCacheMaxLag", "5000"));
+  /**
+   * Number of imported documents inserted with each bulk write.
+   */
+  protected int importChunkSize = Integer.valueOf(System.getenv().getOrDefault("importChunkSize", "1000"));
+  /**
+   * Maximum number of operations of the bulk routes sent with each bulk write.
+   */
+  protected int bulkChunkSize = Integer.valueOf(System.getenv().getOrDefault("bulkChunkSize",
+    String.valueOf(MongoDBVegetableStore.DEFAULT_BULK_CHUNK_SIZE)));
+  /**
+   * Whether the bulk writes run in order and stop at the first failure, their chunks are then sent one at a time.
+   */
+  protected boolean bulkOrdered = Boolean.valueOf(System.getenv().getOrDefault("bulkOrdered", "false"));
+  /**
+   * Maximum number of unordered bulk write chunks sent at the same time.
+   */
+  protected int bulkConcurrency = Integer.valueOf(System.getenv().getOrDefault("bulkConcurrency",
+    String.valueOf(MongoDBVegetableStore.DEFAULT_BULK_CONCURRENCY)));
 
   public void start() throws Exception {
     Router router = Router.router(vertx);
+    // before the body handler, the imported documents are read as they arrive
+    router.post("/api/vegetables/import").handler(this::importAll);
     router.route().handler(BodyHandler.create());
-    router.get("/api/vegetables/page/:number").handler(this::validatePage);
-    router.get("/api/vegetables/page/:number").handler(this::getPage);
+    router.get("/api/vegetables/page").handler(this::validateFields);
+    router.get("/api/vegetables/page").handler(this::validatePage);
+    router.get("/api/vegetables/page").handler(this::getPage);
+    router.get("/api/vegetables/export").handler(this::validateFields);
+    router.get("/api/vegetables/export").handler(this::exportAll);
+    router.get("/api/vegetables/explain").handler(this::explain);
+    router.post("/api/vegetables/aggregate").handler(this::aggregate);
     router.post("/api/vegetables/add").handler(this::isPayloadValidJsonArray);
     router.post("/api/vegetables/add").handler(this::add);
     router.put("/api/vegetables/update").handler(this::isPayloadValidJsonArray);
@@ -42,9 +114,11 @@ public class MongoDBVerticle extends AbstractVerticle {
     router.post("/api/vegetables").handler(this::isPayloadValidJsonObject);
     router.put("/api/vegetables/:id").handler(this::isPayloadValidJsonObject);
     router.patch("/api/vegetables/:id").handler(this::isPayloadValidJsonObject);
+    router.get("/api/vegetables").handler(this::validateFields);
     router.get("/api/vegetables").handler(this::getAll);
     router.post("/api/vegetables").handler(this::addOne);
     router.post("/api/vegetables:id").handler(this::addOrReplaceOne);
+    router.get("/api/vegetables/:id").handler(this::validateFields);
     router.get("/api/vegetables/:id").handler(this::getOne);
     router.put("/api/vegetables/:id").handler(this::replaceOne);
     router.patch("/api/vegetables/:id").handler(this::updateOne);
@@ -65,6 +139,10 @@ public class MongoDBVerticle extends AbstractVerticle {
         if (event.succeeded()) {
           HttpServer http = initHttpServer(router, mongoClient);
           System.out.println("Server ready on port " + http.actualPort());
+          // the indexes are built in the background, the queries work meanwhile
+          initIndexes(mongoClient).setHandler(indexed -> System.out.println(indexed.succeeded()
+            ? "Indexes applied: " + indexed.result().encode()
+            : "Indexes not applied: " + indexed.cause().getMessage()));
         } else {
           System.out.println("Server is not deployed: " + event.cause().getMessage());
         }
@@ -103,8 +181,96 @@ public class MongoDBVerticle extends AbstractVerticle {
   }
 
 
+  /**
+   * Applies the index definitions of {@code indexes.json}: the missing indexes are built in the background, and those
+   * whose keys changed are dropped and built again. The indexes which are not defined are left alone.
+   *
+   * @return the names of the indexes created, rebuilt and unchanged
+   */
+  protected Future<JsonObject> initIndexes(MongoClient mongo) {
+    String collectionName = MongoDBVegetableStore.VEGETABLE_COLLECTION;
+    Future<Buffer> definitions = Future.future();
+    vertx.fileSystem().readFile("indexes.json", definitions);
+    Future<JsonArray> existing = Future.future();
+    mongo.listIndexes(collectionName, existing);
+
+    return CompositeFuture.all(definitions, existing).compose(loaded -> {
+      Map<String, JsonObject> existingKeys = new HashMap<>();
+      for (Object index : existing.result()) {
+        existingKeys.put(((JsonObject) index).getString("name"), ((JsonObject) index).getJsonObject("key"));
+      }
+      JsonArray created = new JsonArray();
+      JsonArray rebuilt = new JsonArray();
+      JsonArray unchanged = new JsonArray();
+      List<Future> applied = new ArrayList<>();
+      for (Object definition : new JsonArray(definitions.result())) {
+        JsonObject key = ((JsonObject) definition).getJsonObject("key");
+        IndexOptions options = new IndexOptions(((JsonObject) definition).getJsonObject("options", new JsonObject()))
+          .background(true);
+        if (options.getName() == null) {
+          options.name(defaultIndexName(key));
+        }
+        JsonObject current = existingKeys.get(options.getName());
+        if (current != null && sameKey(key, current)) {
+          unchanged.add(options.getName());
+          continue;
+        }
+        Future<Void> dropped = Future.future();
+        if (current == null) {
+          created.add(options.getName());
+          dropped.complete();
+        } else {
+          rebuilt.add(options.getName());
+          mongo.dropIndex(collectionName, options.getName(), dropped);
+        }
+        applied.add(dropped.compose(none -> {
+          Future<Void> built = Future.future();
+          mongo.createIndexWithOptions(collectionName, key, options, built);
+          return built;
+        }));
+      }
+      return CompositeFuture.all(applied).map(done -> new JsonObject()
+        .put("created", created)
+        .put("rebuilt", rebuilt)
+        .put("unchanged", unchanged));
+    });
+  }
+
+  /**
+   * @return the name MongoDB gives to the index on {@code key}, e.g. {@code name_1_stock_-1}
+   */
+  private static String defaultIndexName(JsonObject key) {
+    StringBuilder name = new StringBuilder();
+    key.forEach(field -> name.append(name.length() == 0 ? "" : "_").append(field.getKey()).append('_')
+      .append(field.getValue()));
+    return name.toString();
+  }
+
+  /**
+   * Compares the fields of two index keys in order, the numbers by value as the server may return them as doubles.
+   */
+  private static boolean sameKey(JsonObject defined, JsonObject existing) {
+    List<String> fields = new ArrayList<>(defined.fieldNames());
+    if (!fields.equals(new ArrayList<>(existing.fieldNames()))) {
+      return false;
+    }
+    for (String field : fields) {
+      Object definedValue = defined.getValue(field);
+      Object existingValue = existing.getValue(field);
+      boolean same = definedValue instanceof Number && existingValue instanceof Number
+        ? ((Number) definedValue).doubleValue() == ((Number) existingValue).doubleValue()
+        : Objects.equals(definedValue, existingValue);
+      if (!same) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   protected HttpServer initHttpServer(Router router, MongoClient client) {
-    this.store = new MongoDBVegetableStore(client);
+    this.store = documentCache
+      ? new CachedMongoDBVegetableStore(vertx, client, documentCacheMaxLag, bulkChunkSize, bulkOrdered, bulkConcurrency)
+      : new MongoDBVegetableStore(client, bulkChunkSize, bulkOrdered, bulkConcurrency);
     return vertx
       .createHttpServer()
       .requestHandler(router::accept)
@@ -112,7 +278,7 @@ public class MongoDBVerticle extends AbstractVerticle {
   }
 
   protected void validateId(RoutingContext ctx) {
-    if (ctx.pathParam("id").matches("[0-9a-fA-F]+$")) {
+    if (HEX_ID.matcher(ctx.pathParam("id")).matches()) {
       ctx.put("id", ctx.pathParam("id"));
       // continue with the next handler in the route
       ctx.next();
@@ -122,22 +288,64 @@ public class MongoDBVerticle extends AbstractVerticle {
 
   }
 
+  /**
+   * Reads the projection of the returned documents from the comma separated {@code fields} query parameter, e.g.
+   * {@code ?fields=name,amount}. The id is always returned.
+   */
+  protected void validateFields(RoutingContext ctx) {
+    String param = ctx.request().getParam("fields");
+    if (param == null) {
+      ctx.put("fields", null);
+      ctx.next();
+      return;
+    }
+    JsonObject fields = new JsonObject();
+    for (String field : param.split(",", -1)) {
+      String name = field.trim();
+      if (!FIELD_PATH.matcher(name).matches()) {
+        error(ctx, 400, "invalid fields: '" + name + "' is not a field name");
+        return;
+      }
+      fields.put(name, 1);
+    }
+    if (fields.size() > MAX_FIELDS) {
+      error(ctx, 400, "invalid fields: at most " + MAX_FIELDS + " fields can be selected");
+      return;
+    }
+    ctx.put("fields", fields);
+    ctx.next();
+  }
+
+  /**
+   * Reads the page size from the {@code limit} query parameter, and the id of the last document of the previous page
+   * from the {@code after} continuation token.
+   */
   protected void validatePage(RoutingContext ctx) {
+    int limit;
     try {
-      int number = Integer.parseInt(ctx.pathParam("number"));
-      if (number > 0) {
-        ctx.put("page", number);
-        ctx.next();
-      } else {
-        error(ctx, 400, "invalid page: ");
-      }
-    } catch (RuntimeException error) {
-      error(ctx, 400, "invalid page: ");
+      String size = ctx.request().getParam("limit");
+      limit = size == null ? DEFAULT_PAGE_SIZE : Integer.parseInt(size);
+    } catch (NumberFormatException e) {
+      error(ctx, 400, "invalid limit: " + e.getMessage());
+      return;
+    }
+    if (limit < 1 || limit > MAX_PAGE_SIZE) {
+      error(ctx, 400, "invalid limit: must be between 1 and " + MAX_PAGE_SIZE);
+      return;
+    }
+    String after = ctx.request().getParam("after");
+    try {
+      ctx.put("after", after == null ? null : PageToken.decode(after));
+    } catch (IllegalArgumentException e) {
+      error(ctx, 400, "invalid after: " + e.getMessage());
+      return;
     }
+    ctx.put("limit", limit);
+    ctx.next();
   }
 
   protected void getAll(RoutingContext ctx) {
-    CompositeFuture.join(store.readAll(), store.countAll())
+    CompositeFuture.join(store.readAll(ctx.get("fields")), store.countAll())
       .setHandler(event -> {
         if (event.succeeded()) {
           JsonObject result = new JsonObject();
@@ -147,36 +355,284 @@ public class MongoDBVerticle extends AbstractVerticle {
           ctx.response()
             .putHeader("Content-Type", "application/json")
             .setStatusCode(200)
-            .end(result.encodePrettily());
+            .end(result.encode());
         } else {
           writeError(ctx, event.cause());
         }
       });
   }
 
+  /**
+   * Returns a page of documents in id order, {@code next} in the response is the {@code after} token of the following
+   * page, it is {@code null} on the last page.
+   */
   protected void getPage(RoutingContext ctx) {
-    int page = ctx.get("page");
+    int limit = ctx.get("limit");
 
-    store.readPage(page, PAGE_LIMIT).setHandler(readPageEvent -> {
+    store.readPage(ctx.get("after"), limit, ctx.get("fields")).setHandler(readPageEvent -> {
       if (readPageEvent.succeeded()) {
+        JsonObject page = readPageEvent.result();
+        JsonArray documents = page.getJsonArray("result");
+        String next = documents.size() == limit
+          ? PageToken.encode(documents.getJsonObject(documents.size() - 1).getValue("_id"))
+          : null;
         ctx.response()
           .putHeader("Content-Type", "application/json")
           .setStatusCode(200)
-          .end(readPageEvent.result().encodePrettily());
+          .end(page.put("next", next).encode());
       } else {
         writeError(ctx, readPageEvent.cause());
       }
     });
   }
 
+  /**
+   * Streams all the documents as newline delimited JSON. The documents are only fetched when the response write queue
+   * has room for them, so the memory used doesn't depend on their number.
+   */
+  protected void exportAll(RoutingContext ctx) {
+    stream(ctx, store.exportAll(ctx.get("fields")), 500);
+  }
+
+  /**
+   * Writes the {@code documents} as newline delimited JSON, as fast as the client reads them.
+   *
+   * @param failureStatus the status of the response if the stream fails before its first document
+   */
+  private static void stream(RoutingContext ctx, ReadStream<JsonObject> documents, int failureStatus) {
+    HttpServerResponse response = ctx.response()
+      .putHeader("Content-Type", NDJSON)
+      .setChunked(true);
+    // removing the handler closes the cursor on the server, pausing the stream would keep it until it times out
+    response.closeHandler(closed -> documents.endHandler(null).handler(null));
+    documents
+      .exceptionHandler(err -> {
+        if (response.headWritten()) {
+          response.close();
+        } else {
+          error(ctx, failureStatus, err.getMessage());
+        }
+      })
+      .endHandler(end -> response.end())
+      .handler(document -> {
+        response.write(Buffer.buffer(document.encode()).appendByte((byte) '\n'));
+        if (response.writeQueueFull()) {
+          documents.pause();
+          response.drainHandler(drained -> documents.resume());
+        }
+      });
+  }
+
+  /**
+   * Inserts the newline delimited JSON documents of the request body, with a bulk write every
+   * {@code importChunkSize} documents. The body is read as the chunks are written, so the memory used doesn't depend
+   * on its size. The documents written before a failure stay written, the response tells how many they are.
+   */
+  protected void importAll(RoutingContext ctx) {
+    new NdjsonImport(ctx).start();
+  }
+
+  private final class NdjsonImport {
+    private final RoutingContext ctx;
+    private final RecordParser lines;
+    private final List<JsonObject> chunk = new ArrayList<>(importChunkSize);
+    private long line;
+    private long imported;
+    private int chunks;
+    private boolean failed;
+
+    NdjsonImport(RoutingContext ctx) {
+      this.ctx = ctx;
+      this.lines = NdjsonLines.parse(ctx.request(), MAX_IMPORT_LINE);
+    }
+
+    void start() {
+      lines
+        .exceptionHandler(err -> fail(400, err.getMessage()))
+        .endHandler(end -> flush(() -> ctx.response()
+          .putHeader("Content-Type", "application/json")
+          .setStatusCode(201)
+          .end(new JsonObject().put("imported", imported).put("chunks", chunks).encode())))
+        .handler(this::record);
+    }
+
+    private void record(Buffer buffer) {
+      line++;
+      String text = buffer.toString(StandardCharsets.UTF_8).trim();
+      if (failed || text.isEmpty()) {
+        return;
+      }
+      JsonObject document;
+      try {
+        document = new JsonObject(text);
+      } catch (DecodeException e) {
+        fail(415, "line " + line + " isn't a json object");
+        return;
+      }
+      if (!(document.getValue("name") instanceof String)) {
+        fail(422, "line " + line + ": Name is required!");
+        return;
+      }
+      chunk.add(document);
+      if (chunk.size() == importChunkSize) {
+        lines.pause();
+        flush(lines::resume);
+      }
+    }
+
+    private void flush(Runnable then) {
+      if (failed) {
+        return;
+      }
+      if (chunk.isEmpty()) {
+        then.run();
+        return;
+      }
+      List<JsonObject> documents = new ArrayList<>(chunk);
+      chunk.clear();
+      store.insertChunk(documents).setHandler(inserted -> {
+        if (inserted.succeeded()) {
+          imported += documents.size();
+          chunks++;
+          then.run();
+        } else {
+          if (inserted.cause() instanceof PartialBulkWriteException) {
+            // the documents before the failed ones are inserted, and those after them too if the chunk is unordered
+            imported += ((PartialBulkWriteException) inserted.cause()).getReport()
+              .getLong(MongoClientBulkWriteResult.INSERTED_COUNT, 0L);
+          }
+          fail(409, inserted.cause().getMessage());
+        }
+      });
+    }
+
+    private void fail(int status, String cause) {
+      if (failed) {
+        return;
+      }
+      failed = true;
+      // the rest of the body is read and ignored
+      lines.resume();
+      error(ctx, status, cause + " (" + imported + " documents imported)");
+    }
+  }
+
+  /**
+   * Explains the query given by the {@code filter} and {@code sort} JSON query parameters, and the {@code limit} one.
+   * {@code examinedPerReturned} in the response is the number of documents examined for each one returned, a query
+   * going much above 1 scans documents it doesn't need.
+   */
+  protected void explain(RoutingContext ctx) {
+    JsonObject filter;
+    JsonObject sort;
+    int limit;
+    try {
+      filter = new JsonObject(ctx.request().getParam("filter") == null ? "{}" : ctx.request().getParam("filter"));
+      sort = ctx.request().getParam("sort") == null ? null : new JsonObject(ctx.request().getParam("sort"));
+      limit = ctx.request().getParam("limit") == null ? 0 : Integer.parseInt(ctx.request().getParam("limit"));
+    } catch (DecodeException | NumberFormatException e) {
+      error(ctx, 400, "invalid query: " + e.getMessage());
+      return;
+    }
+    if (limit < 0) {
+      error(ctx, 400, "invalid limit: must not be negative");
+      return;
+    }
+    if (runsCode(filter)) {
+      error(ctx, 400, "invalid filter: server side code is not allowed");
+      return;
+    }
+
+    store.explain(filter, sort, limit).setHandler(event -> {
+      if (event.succeeded()) {
+        ctx.response()
+          .putHeader("Content-Type", "application/json")
+          .setStatusCode(200)
+          .end(event.result().encode());
+      } else {
+        error(ctx, 400, event.cause().getMessage());
+      }
+    });
+  }
+
+  /**
+   * Runs the aggregation pipeline of the request body, e.g.
+   * {@code [{"$group":{"_id":"$name","total":{"$sum":"$amount"}}},{"$sort":{"total":-1}}]}, and streams its results
+   * as newline delimited JSON. Only the {@link #AGGREGATE_STAGES} are allowed.
+   */
+  protected void aggregate(RoutingContext ctx) {
+    JsonArray pipeline;
+    try {
+      pipeline = ctx.getBodyAsJsonArray();
+    } catch (DecodeException | ClassCastException e) {
+      error(ctx, 400, "invalid pipeline: " + e.getMessage());
+      return;
+    }
+    if (pipeline == null || pipeline.isEmpty() || pipeline.size() > MAX_AGGREGATE_STAGES) {
+      error(ctx, 400, "invalid pipeline: must hold between 1 and " + MAX_AGGREGATE_STAGES + " stages");
+      return;
+    }
+    for (Object stage : pipeline) {
+      String invalid = invalidStage(stage);
+      if (invalid != null) {
+        error(ctx, 400, "invalid pipeline: " + invalid);
+        return;
+      }
+    }
+
+    stream(ctx, store.aggregate(pipeline), 400);
+  }
+
+  /**
+   * @return why {@code stage} can't run, {@code null} if it can
+   */
+  private static String invalidStage(Object stage) {
+    if (!(stage instanceof JsonObject) || ((JsonObject) stage).size() != 1) {
+      return "each stage must be an object with a single field";
+    }
+    String name = ((JsonObject) stage).fieldNames().iterator().next();
+    if (!AGGREGATE_STAGES.contains(name)) {
+      return name + " is not allowed, the stages must be among " + AGGREGATE_STAGES;
+    }
+    Object spec = ((JsonObject) stage).getValue(name);
+    if (name.equals("$limit")) {
+      return spec instanceof Number && ((Number) spec).longValue() > 0 ? null : "$limit must be a positive number";
+    }
+    if (!(spec instanceof JsonObject)) {
+      return name + " must be an object";
+    }
+    return runsCode(spec) ? "server side code is not allowed" : null;
+  }
+
+  /**
+   * @return whether the filter holds an operator running JavaScript on the server
+   */
+  private static boolean runsCode(Object filter) {
+    if (filter instanceof JsonObject) {
+      for (Map.Entry<String, Object> field : (JsonObject) filter) {
+        if (field.getKey().equals("$where") || field.getKey().equals("$function")
+          || field.getKey().equals("$accumulator") || runsCode(field.getValue())) {
+          return true;
+        }
+      }
+    } else if (filter instanceof JsonArray) {
+      for (Object element : (JsonArray) filter) {
+        if (runsCode(element)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
   protected void getOne(RoutingContext ctx) {
-    store.read(ctx.get("id"))
+    store.read(ctx.get("id"), ctx.get("fields"))
       .setHandler(event -> {
         if (event.succeeded()) {
           ctx.response()
             .putHeader("Content-Type", "application/json")
             .setStatusCode(200)
-            .end(event.result().encodePrettily());
+            .end(event.result().encode());
         } else {
           writeError(ctx, event.cause());
         }
@@ -192,7 +648,7 @@ public class MongoDBVerticle extends AbstractVerticle {
             ctx.response()
               .putHeader("Content-Type", "application/json")
               .setStatusCode(201)
-              .end(event.result().encodePrettily());
+              .end(event.result().encode());
           } else {
             writeError(ctx, event.cause());
           }
@@ -212,7 +668,7 @@ public class MongoDBVerticle extends AbstractVerticle {
           ctx.response()
             .putHeader("Content-Type", "application/json")
             .setStatusCode(201)
-            .end(event.result().encodePrettily());
+            .end(event.result().encode());
         } else {
           writeError(ctx, event.cause());
         }
@@ -228,7 +684,7 @@ public class MongoDBVerticle extends AbstractVerticle {
           ctx.response()
             .putHeader("Content-Type", "application/json")
             .setStatusCode(201)
-            .end(event.result().encodePrettily());
+            .end(event.result().encode());
         } else {
           writeError(ctx, event.cause());
         }
@@ -244,7 +700,7 @@ public class MongoDBVerticle extends AbstractVerticle {
           ctx.response()
             .putHeader("Content-Type", "application/json")
             .setStatusCode(201)
-            .end(event.result().encodePrettily());
+            .end(event.result().encode());
         } else {
           writeError(ctx, event.cause());
         }
@@ -259,7 +715,7 @@ public class MongoDBVerticle extends AbstractVerticle {
           ctx.response()
             .putHeader("Content-Type", "application/json")
             .setStatusCode(201)
-            .end(event.result().encodePrettily());
+            .end(event.result().encode());
         } else {
           writeError(ctx, event.cause());
         }
@@ -274,7 +730,7 @@ public class MongoDBVerticle extends AbstractVerticle {
           ctx.response()
             .putHeader("Content-Type", "application/json")
             .setStatusCode(201)
-            .end(event.result().encodePrettily());
+            .end(event.result().encode());
         } else {
           writeError(ctx, event.cause());
         }
@@ -289,7 +745,7 @@ public class MongoDBVerticle extends AbstractVerticle {
           ctx.response()
             .putHeader("Content-Type", "application/json")
             .setStatusCode(204)
-            .end(event.result().encodePrettily());
+            .end(event.result().encode());
         } else {
           writeError(ctx, event.cause());
         }
@@ -300,14 +756,12 @@ public class MongoDBVerticle extends AbstractVerticle {
   private void isPayloadValidJsonObject(RoutingContext ctx) {
     JsonObject item;
     try {
-      item = ctx.getBodyAsJson();
-    } catch (RuntimeException e) {
-      writeError(ctx, new UnsupportedMediaTypeException("Payload isn't json object"));
+      item = JsonBodies.object(ctx.getBody());
+    } catch (UnsupportedMediaTypeException e) {
+      writeError(ctx, e);
       return;
     }
-    if (Objects.isNull(item)) {
-      writeError(ctx, new UnsupportedMediaTypeException("Payload isn't set"));
-    } else if (ctx.request().method() != HttpMethod.PATCH
+    if (ctx.request().method() != HttpMethod.PATCH
       && ctx.request().method() != HttpMethod.DELETE
       && Objects.isNull(item.getString("name"))) {
       writeError(ctx, new UnprocessableEntityException("Name is required!"));
@@ -318,20 +772,15 @@ public class MongoDBVerticle extends AbstractVerticle {
   }
 
   private void isPayloadValidJsonArray(RoutingContext ctx) {
-    JsonArray item;
-    System.out.println(ctx.getBodyAsJsonArray().toString());
+    JsonArray items;
     try {
-      item = ctx.getBodyAsJsonArray();
-    } catch (RuntimeException e) {
-      writeError(ctx, new UnsupportedMediaTypeException("Payload isn't json array"));
+      items = JsonBodies.arrayOfObjects(ctx.getBody());
+    } catch (UnsupportedMediaTypeException | UnprocessableEntityException e) {
+      writeError(ctx, e);
       return;
     }
-    if (Objects.isNull(item)) {
-      writeError(ctx, new UnsupportedMediaTypeException("Payload isn't set"));
-    } else {
-      ctx.put("jsonBody", item);
-      ctx.next();
-    }
+    ctx.put("jsonBody", items);
+    ctx.next();
   }
 
   protected void deleteOne(RoutingContext ctx) {
@@ -339,7 +788,7 @@ public class MongoDBVerticle extends AbstractVerticle {
       if (event.succeeded()) {
         ctx.response()
           .setStatusCode(204)
-          .end(event.result().encodePrettily());
+          .end(event.result().encode());
       } else {
         writeError(ctx, event.cause());
       }
@@ -354,6 +803,15 @@ public class MongoDBVerticle extends AbstractVerticle {
       error(ctx, 422, err.getMessage());
     } else if (err instanceof UnsupportedMediaTypeException) {
       error(ctx, 415, err.getMessage());
+    } else if (err instanceof PartialBulkWriteException) {
+      ctx.response()
+        .putHeader("Content-Type", "application/json")
+        .setStatusCode(409)
+        .end(((PartialBulkWriteException) err).getReport().copy()
+          .put("error", err.getMessage())
+          .put("code", 409)
+          .put("path", ctx.request().path())
+          .encode());
     } else {
       error(ctx, 409, err.getMessage());
     }
@@ -367,7 +825,7 @@ public class MongoDBVerticle extends AbstractVerticle {
     ctx.response()
       .putHeader("Content-Type", "application/json")
       .setStatusCode(status)
-      .end(error.encodePrettily());
+      .end(error.encode());
   }
 
 }
@@ -0,0 +1,95 @@
+package io.vertx.openshift.mongodb;
+
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.parsetools.RecordParser;
+import io.vertx.core.streams.ReadStream;
+
+/**
+ * Splits a newline delimited JSON body into its lines. A {@link RecordParser} drops the bytes following the last
+ * delimiter when its stream ends, so the last line of a body that doesn't end with a newline is terminated here.
+ */
+public final class NdjsonLines {
+
+  private NdjsonLines() {
+  }
+
+  /**
+   * @param maxLineSize the maximum size of a line, in bytes
+   * @return the lines of {@code body}, without their newline
+   */
+  public static RecordParser parse(ReadStream<Buffer> body, int maxLineSize) {
+    return RecordParser.newDelimited("\n", new Terminated(body)).maxRecordSize(maxLineSize);
+  }
+
+  /**
+   * {@code source}, followed by a newline if it doesn't end with one.
+   */
+  private static final class Terminated implements ReadStream<Buffer> {
+    private static final Buffer NEWLINE = Buffer.buffer("\n");
+
+    private final ReadStream<Buffer> source;
+    private Handler<Buffer> handler;
+    private boolean terminated = true;
+
+    Terminated(ReadStream<Buffer> source) {
+      this.source = source;
+    }
+
+    @Override
+    public ReadStream<Buffer> exceptionHandler(Handler<Throwable> handler) {
+      source.exceptionHandler(handler);
+      return this;
+    }
+
+    @Override
+    public ReadStream<Buffer> handler(Handler<Buffer> handler) {
+      this.handler = handler;
+      if (handler == null) {
+        source.handler(null);
+      } else {
+        source.handler(buffer -> {
+          if (buffer.length() > 0) {
+            terminated = buffer.getByte(buffer.length() - 1) == '\n';
+          }
+          handler.handle(buffer);
+        });
+      }
+      return this;
+    }
+
+    @Override
+    public ReadStream<Buffer> pause() {
+      source.pause();
+      return this;
+    }
+
+    @Override
+    public ReadStream<Buffer> resume() {
+      source.resume();
+      return this;
+    }
+
+    @Override
+    public ReadStream<Buffer> fetch(long amount) {
+      source.fetch(amount);
+      return this;
+    }
+
+    @Override
+    public ReadStream<Buffer> endHandler(Handler<Void> endHandler) {
+      if (endHandler == null) {
+        source.endHandler(null);
+      } else {
+        source.endHandler(end -> {
+          if (!terminated && handler != null) {
+            terminated = true;
+            handler.handle(NEWLINE.copy());
+          }
+          endHandler.handle(end);
+        });
+      }
+      return this;
+    }
+  }
+}
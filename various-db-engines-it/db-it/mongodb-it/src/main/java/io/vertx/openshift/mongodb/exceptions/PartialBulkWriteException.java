@@ -0,0 +1,20 @@
+package io.vertx.openshift.mongodb.exceptions;
+
+import io.vertx.core.json.JsonObject;
+
+/**
+ * A bulk write some operations of which failed. The report holds the counts of the operations that were applied and
+ * a {@code writeErrors} array describing the ones that weren't.
+ */
+public class PartialBulkWriteException extends Exception {
+  private final JsonObject report;
+
+  public PartialBulkWriteException(String message, JsonObject report) {
+    super(message);
+    this.report = report;
+  }
+
+  public JsonObject getReport() {
+    return report;
+  }
+}
@@ -0,0 +1,363 @@
+package io.vertx.openshift.mongodb.models;
+
+import com.mongodb.MongoCommandException;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.mongo.MongoClient;
+import io.vertx.ext.mongo.MongoClientUpdateResult;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * {@link MongoDBVegetableStore} serving {@link #read(String, JsonObject)}, {@link #readAll(JsonObject)} and
+ * {@link #countAll()} from a copy of the collection kept in memory. The copy is loaded once, then kept in sync by a
+ * change stream, opened before the load so that no change is missed. The changes made during the load are applied
+ * after it: an item can be briefly older than in the collection, until its latest change is applied. The whole
+ * collection is held in memory, so the cache suits small collections only.
+ * <p>
+ * The single document writes going through this store are applied at once, so they can be read right away. The bulk
+ * writes are applied when the change stream reports them.
+ * <p>
+ * The queries go to the collection while the copy is being loaded, when the change stream hasn't answered for longer
+ * than the allowed lag, or after it failed, until it is opened again. A server without change streams, e.g. a
+ * standalone one or one older than 3.6, disables the copy for good.
+ * <p>
+ * Must be used from a single event loop.
+ */
+public class CachedMongoDBVegetableStore extends MongoDBVegetableStore {
+
+  /**
+   * Maximum time, in milliseconds, the server waits for changes before answering a {@code getMore}.
+   */
+  private static final long AWAIT_TIME = 1000;
+  /**
+   * Time, in milliseconds, before the change stream is opened again after a failure.
+   */
+  private static final long RETRY_DELAY = 5000;
+  /**
+   * The codes of the errors of a server that can't open a change stream: unrecognized pipeline stage, before and
+   * since 3.4, change stream on a server which is not part of a replica set, and command not supported.
+   */
+  private static final Set<Integer> UNSUPPORTED_CODES = new HashSet<>(Arrays.asList(16436, 40324, 40573, 115));
+
+  private final Vertx vertx;
+  private final long maxLag;
+
+  private final Map<String, JsonObject> documents = new HashMap<>();
+  /**
+   * Incremented each time the change stream is opened or fails, the callbacks of the previous ones are ignored.
+   */
+  private int generation;
+  /**
+   * The id of the open change stream cursor, 0 if there is none.
+   */
+  private long cursorId;
+  private boolean disabled;
+  private boolean synced;
+  /**
+   * The changes received while the documents are being loaded, {@code null} otherwise.
+   */
+  private List<JsonObject> pending;
+  /**
+   * When the change stream last answered.
+   */
+  private long lastPoll;
+
+  /**
+   * @param vertx  the Vert.x instance used to schedule the retries
+   * @param client the client of the database
+   * @param maxLag the time, in milliseconds, the change stream can go without answering before the queries go to the
+   *               collection
+   * @see MongoDBVegetableStore#MongoDBVegetableStore(MongoClient, int, boolean, int)
+   */
+  public CachedMongoDBVegetableStore(Vertx vertx, MongoClient client, long maxLag, int bulkChunkSize,
+                                     boolean orderedBulk, int bulkConcurrency) {
+    super(client, bulkChunkSize, orderedBulk, bulkConcurrency);
+    this.vertx = vertx;
+    this.maxLag = maxLag;
+    open();
+  }
+
+  private boolean fresh() {
+    return synced && System.currentTimeMillis() - lastPoll <= maxLag;
+  }
+
+  private void open() {
+    int current = ++generation;
+    JsonObject changeStream = new JsonObject().put("fullDocument", "updateLookup");
+    JsonObject command = new JsonObject()
+      .put("aggregate", VEGETABLE_COLLECTION)
+      .put("pipeline", new JsonArray().add(new JsonObject().put("$changeStream", changeStream)))
+      .put("cursor", new JsonObject());
+    client.runCommand("aggregate", command, opened -> {
+      if (opened.failed()) {
+        fail(current, opened.cause());
+        return;
+      }
+      JsonObject cursor = opened.result().getJsonObject("cursor");
+      cursorId = cursor.getLong("id");
+      if (current != generation) {
+        // closed while it was being opened
+        killCursor();
+        return;
+      }
+      pending = new ArrayList<>();
+      lastPoll = System.currentTimeMillis();
+      load(current);
+      if (apply(cursor.getJsonArray("firstBatch"))) {
+        poll(current, cursor.getLong("id"));
+      } else {
+        fail(current, new IllegalStateException("The change stream was invalidated"));
+      }
+    });
+  }
+
+  private void load(int current) {
+    documents.clear();
+    client.findBatch(VEGETABLE_COLLECTION, new JsonObject())
+      .exceptionHandler(err -> fail(current, err))
+      .handler(document -> {
+        if (current == generation) {
+          documents.put(key(document.getValue("_id")), document);
+        }
+      })
+      .endHandler(end -> {
+        if (current == generation) {
+          List<JsonObject> changes = pending;
+          pending = null;
+          changes.forEach(this::apply);
+          synced = true;
+        }
+      });
+  }
+
+  private void poll(int current, long cursorId) {
+    JsonObject command = new JsonObject()
+      .put("getMore", cursorId)
+      .put("collection", VEGETABLE_COLLECTION)
+      .put("maxTimeMS", AWAIT_TIME);
+    client.runCommand("getMore", command, polled -> {
+      if (current != generation) {
+        return;
+      }
+      if (polled.failed()) {
+        fail(current, polled.cause());
+        return;
+      }
+      JsonObject cursor = polled.result().getJsonObject("cursor");
+      this.cursorId = cursor.getLong("id");
+      lastPoll = System.currentTimeMillis();
+      if (apply(cursor.getJsonArray("nextBatch"))) {
+        poll(current, cursor.getLong("id"));
+      } else {
+        fail(current, new IllegalStateException("The change stream was invalidated"));
+      }
+    });
+  }
+
+  /**
+   * Stops using the documents, and opens the change stream again after a delay, unless the server doesn't support
+   * change streams.
+   */
+  private void fail(int current, Throwable cause) {
+    if (current != generation || disabled) {
+      // already failed
+      return;
+    }
+    generation++;
+    synced = false;
+    pending = null;
+    documents.clear();
+    killCursor();
+    if (cause instanceof MongoCommandException
+      && UNSUPPORTED_CODES.contains(((MongoCommandException) cause).getErrorCode())) {
+      disabled = true;
+      System.out.println("Document cache disabled, the server has no change streams: " + cause.getMessage());
+    } else {
+      System.out.println("Document cache disabled for " + RETRY_DELAY + " ms: " + cause.getMessage());
+      vertx.setTimer(RETRY_DELAY, timer -> open());
+    }
+  }
+
+  /**
+   * Closes the abandoned change stream cursor on the server, which would otherwise keep it until it times out.
+   */
+  private void killCursor() {
+    if (cursorId == 0) {
+      return;
+    }
+    JsonObject command = new JsonObject()
+      .put("killCursors", VEGETABLE_COLLECTION)
+      .put("cursors", new JsonArray().add(cursorId));
+    cursorId = 0;
+    client.runCommand("killCursors", command, killed -> {
+      if (killed.failed()) {
+        System.out.println("Could not kill the change stream cursor: " + killed.cause().getMessage());
+      }
+    });
+  }
+
+  /**
+   * @return whether the change stream is still valid
+   */
+  private boolean apply(JsonArray changes) {
+    for (int i = 0; i < changes.size(); i++) {
+      JsonObject change = changes.getJsonObject(i);
+      String operation = change.getString("operationType");
+      if ("invalidate".equals(operation) || "drop".equals(operation) || "dropDatabase".equals(operation)
+        || "rename".equals(operation)) {
+        return false;
+      }
+      if (pending != null) {
+        pending.add(change);
+      } else {
+        apply(change);
+      }
+    }
+    return true;
+  }
+
+  private void apply(JsonObject change) {
+    String id = key(change.getJsonObject("documentKey").getValue("_id"));
+    JsonObject document = change.getJsonObject("fullDocument");
+    // the document of an update is looked up when the change is read, it is missing if it was deleted since
+    if ("delete".equals(change.getString("operationType")) || document == null) {
+      documents.remove(id);
+    } else {
+      documents.put(id, document);
+    }
+  }
+
+  /**
+   * @return the key of the document whose id is {@code id}, which can be an ObjectId if it was set by the client
+   */
+  private static String key(Object id) {
+    return id instanceof String ? (String) id : String.valueOf(id);
+  }
+
+  @Override
+  public Future<JsonObject> insertOrReplace(JsonObject item) {
+    return super.insertOrReplace(item)
+      .map(result -> {
+        String id = result.getString("id") != null ? result.getString("id") : item.getString("_id");
+        written(id, item.copy().put("_id", id));
+        return result;
+      });
+  }
+
+  @Override
+  public Future<JsonObject> insert(JsonObject item) {
+    return super.insert(item)
+      .map(result -> {
+        written(result.getString("id"), item.copy().put("_id", result.getString("id")));
+        return result;
+      });
+  }
+
+  @Override
+  public Future<JsonObject> update(String id, JsonObject item) {
+    return super.update(id, item)
+      .map(result -> {
+        JsonObject document = documents.get(id);
+        if (document != null && result.getLong(MongoClientUpdateResult.DOC_MATCHED, 0L) > 0) {
+          written(id, document.copy().mergeIn(item).put("_id", id));
+        }
+        return result;
+      });
+  }
+
+  @Override
+  public Future<JsonObject> replace(String id, JsonObject item) {
+    return super.replace(id, item)
+      .map(result -> {
+        if (result.getLong(MongoClientUpdateResult.DOC_MATCHED, 0L) > 0) {
+          written(id, item.copy().put("_id", id));
+        }
+        return result;
+      });
+  }
+
+  @Override
+  public Future<JsonObject> delete(String id) {
+    return super.delete(id)
+      .map(result -> {
+        written(id, null);
+        return result;
+      });
+  }
+
+  private void written(String id, JsonObject document) {
+    if (!synced || id == null) {
+      // the load, or the change stream, catches up with the write
+      return;
+    }
+    if (document == null) {
+      documents.remove(id);
+    } else {
+      documents.put(id, document);
+    }
+  }
+
+  /**
+   * @return whether the documents can be served with the {@code fields} projection, only the top level fields are
+   * projected in memory
+   */
+  private boolean fresh(JsonObject fields) {
+    return fresh() && (fields == null || fields.fieldNames().stream().noneMatch(field -> field.contains(".")));
+  }
+
+  /**
+   * @return a copy of {@code document}, with its id and the {@code fields} it has
+   */
+  private static JsonObject project(JsonObject document, JsonObject fields) {
+    if (fields == null) {
+      return document.copy();
+    }
+    JsonObject projected = new JsonObject().put("_id", document.getValue("_id"));
+    for (String field : fields.fieldNames()) {
+      if (document.containsKey(field)) {
+        projected.put(field, document.getValue(field));
+      }
+    }
+    return projected.copy();
+  }
+
+  @Override
+  public Future<JsonObject> readAll(JsonObject fields) {
+    if (!fresh(fields)) {
+      return super.readAll(fields);
+    }
+    JsonArray result = new JsonArray();
+    documents.values().forEach(document -> result.add(project(document, fields)));
+    return Future.succeededFuture(new JsonObject().put("result", result));
+  }
+
+  @Override
+  public Future<JsonObject> countAll() {
+    if (!fresh()) {
+      return super.countAll();
+    }
+    return Future.succeededFuture(new JsonObject().put("count", (long) documents.size()));
+  }
+
+  @Override
+  public Future<JsonObject> read(String id, JsonObject fields) {
+    if (!fresh(fields)) {
+      return super.read(id, fields);
+    }
+    JsonObject document = documents.get(id);
+    if (document == null) {
+      return Future.failedFuture(new NoSuchElementException("Document with id: " + id + " not found"));
+    }
+    return Future.succeededFuture(project(document, fields));
+  }
+}
@@ -1,13 +1,25 @@
 package io.vertx.openshift.mongodb.models;
 
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoCommandException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
 import io.vertx.core.Future;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
+import io.vertx.core.streams.ReadStream;
+import io.vertx.ext.mongo.AggregateOptions;
 import io.vertx.ext.mongo.BulkOperation;
+import io.vertx.ext.mongo.BulkWriteOptions;
 import io.vertx.ext.mongo.FindOptions;
 import io.vertx.ext.mongo.MongoClient;
+import io.vertx.ext.mongo.MongoClientBulkWriteResult;
+import io.vertx.openshift.mongodb.exceptions.PartialBulkWriteException;
+import org.bson.types.ObjectId;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Objects;
@@ -17,9 +29,45 @@ public class MongoDBVegetableStore {
 
   protected final MongoClient client;
   public static final String VEGETABLE_COLLECTION = "vegetables";
+  public static final int DEFAULT_BULK_CHUNK_SIZE = 1000;
+  public static final int DEFAULT_BULK_CONCURRENCY = 4;
+  /**
+   * The code of the error of a command the server doesn't have.
+   */
+  private static final int COMMAND_NOT_FOUND = 59;
+  /**
+   * The smallest string and ObjectId, in the BSON sort order. The ids of documents inserted before all the insert
+   * paths set string ids can be ObjectIds.
+   */
+  private static final List<Object> ID_TYPE_LOWER_BOUNDS = Arrays.asList("",
+    new JsonObject().put("$oid", "000000000000000000000000"));
+  /**
+   * Time, in milliseconds, an aggregation can run on the server before it is aborted.
+   */
+  public static final long AGGREGATE_MAX_TIME = 10000;
+
+  private final int bulkChunkSize;
+  private final BulkWriteOptions bulkOptions;
+  private final int bulkConcurrency;
 
   public MongoDBVegetableStore(MongoClient mongoClient) {
+    this(mongoClient, DEFAULT_BULK_CHUNK_SIZE, false, DEFAULT_BULK_CONCURRENCY);
+  }
+
+  /**
+   * @param bulkChunkSize   the maximum number of operations sent with each bulk write
+   * @param orderedBulk     whether the operations of a bulk write run in order, stopping at the first failure. The
+   *                        chunks are then sent one after the other
+   * @param bulkConcurrency the maximum number of unordered chunks written at the same time
+   */
+  public MongoDBVegetableStore(MongoClient mongoClient, int bulkChunkSize, boolean orderedBulk, int bulkConcurrency) {
+    if (bulkChunkSize < 1 || bulkConcurrency < 1) {
+      throw new IllegalArgumentException("The bulk chunk size and concurrency must be positive");
+    }
     this.client = mongoClient;
+    this.bulkChunkSize = bulkChunkSize;
+    this.bulkOptions = new BulkWriteOptions(orderedBulk);
+    this.bulkConcurrency = orderedBulk ? 1 : bulkConcurrency;
   }
 
   public Future<JsonObject> insertOrReplace(JsonObject item) {
@@ -77,10 +125,13 @@ public class MongoDBVegetableStore {
     return updateFuture;
   }
 
-  public Future<JsonObject> readAll() {
+  /**
+   * @param fields the projection of the documents, {@code null} for the whole documents
+   */
+  public Future<JsonObject> readAll(JsonObject fields) {
     Future<JsonObject> readAllFuture = Future.future();
     JsonArray result = new JsonArray();
-    client.findBatch(VEGETABLE_COLLECTION, new JsonObject())
+    client.findBatchWithOptions(VEGETABLE_COLLECTION, new JsonObject(), projection(fields))
       .handler(jsonObject -> {
         result.add(jsonObject);
       })
@@ -91,6 +142,33 @@ public class MongoDBVegetableStore {
     return readAllFuture;
   }
 
+  /**
+   * @param fields the projection of the documents, {@code null} for the whole documents
+   * @return all the documents, fetched in batches as the stream is read
+   */
+  public ReadStream<JsonObject> exportAll(JsonObject fields) {
+    return client.findBatchWithOptions(VEGETABLE_COLLECTION, new JsonObject(), projection(fields));
+  }
+
+  /**
+   * Runs {@code pipeline} on the server, the stages aren't checked so they must come from a trusted source or have
+   * been validated.
+   *
+   * @return the results, fetched in batches as the stream is read
+   */
+  public ReadStream<JsonObject> aggregate(JsonArray pipeline) {
+    AggregateOptions options = new AggregateOptions().setMaxTime(AGGREGATE_MAX_TIME);
+    return client.aggregateWithOptions(VEGETABLE_COLLECTION, pipeline, options);
+  }
+
+  private static FindOptions projection(JsonObject fields) {
+    FindOptions options = new FindOptions();
+    if (fields != null) {
+      options.setFields(fields);
+    }
+    return options;
+  }
+
   public Future<JsonObject> countAll() {
     Future<JsonObject> countResult = Future.future();
     client.count(VEGETABLE_COLLECTION, new JsonObject(), event -> {
@@ -103,10 +181,13 @@ public class MongoDBVegetableStore {
     return countResult;
   }
 
-  public Future<JsonObject> read(String id) {
+  /**
+   * @param fields the projection of the document, {@code null} for the whole document
+   */
+  public Future<JsonObject> read(String id, JsonObject fields) {
     Future<JsonObject> readFuture = Future.future();
     JsonObject findQuery = new JsonObject().put("_id", id);
-    client.findOne(VEGETABLE_COLLECTION, findQuery, null, requestResult -> {
+    client.findOne(VEGETABLE_COLLECTION, findQuery, fields, requestResult -> {
       if (requestResult.succeeded()) {
         if (Objects.isNull(requestResult.result())) {
           readFuture.fail(new NoSuchElementException("Document with id: " + id + " not found"));
@@ -120,23 +201,178 @@ public class MongoDBVegetableStore {
     return readFuture;
   }
 
-  public Future<JsonObject> readPage(int page, int limit) {
+  /**
+   * Reads the documents following the one whose id is {@code afterId}, in id order. The documents are found with the
+   * {@code _id} index, so a page costs the same wherever it is.
+   * <p>
+   * A comparison only matches the ids of its own BSON type, so a page that runs out of ids of the type of
+   * {@code afterId} carries on with the types sorting after it: numbers, strings, then ObjectIds.
+   *
+   * @param afterId the id of the last document of the previous page, {@code null} for the first page
+   * @param fields  the projection of the documents, {@code null} for the whole documents
+   */
+  public Future<JsonObject> readPage(Object afterId, int limit, JsonObject fields) {
+    JsonArray documents = new JsonArray();
+    if (afterId == null) {
+      return readRange(new JsonObject(), limit, fields, documents, ID_TYPE_LOWER_BOUNDS.size());
+    }
+    JsonObject query = new JsonObject().put("_id", new JsonObject().put("$gt", afterId));
+    return readRange(query, limit, fields, documents, nextIdType(afterId));
+  }
+
+  /**
+   * Adds the documents matching {@code query} to {@code documents}, then those of the id types from
+   * {@code nextIdType} on while the page isn't full.
+   */
+  private Future<JsonObject> readRange(JsonObject query, int limit, JsonObject fields, JsonArray documents,
+                                       int nextIdType) {
     Future<JsonObject> returnedPage = Future.future();
+    FindOptions options = projection(fields).setSort(new JsonObject().put("_id", 1))
+      .setLimit(limit - documents.size());
+    client.findWithOptions(VEGETABLE_COLLECTION, query, options, event -> {
+      if (event.failed()) {
+        returnedPage.fail(event.cause());
+        return;
+      }
+      event.result().forEach(documents::add);
+      if (documents.size() < limit && nextIdType < ID_TYPE_LOWER_BOUNDS.size()) {
+        JsonObject next = new JsonObject()
+          .put("_id", new JsonObject().put("$gte", ID_TYPE_LOWER_BOUNDS.get(nextIdType)));
+        readRange(next, limit, fields, documents, nextIdType + 1).setHandler(returnedPage);
+      } else {
+        returnedPage.complete(new JsonObject().put("result", documents));
+      }
+    });
+    return returnedPage;
+  }
+
+  /**
+   * @return the index in {@link #ID_TYPE_LOWER_BOUNDS} of the first id type sorting after the type of {@code id}
+   */
+  private static int nextIdType(Object id) {
+    if (id instanceof Number) {
+      return 0;
+    } else if (id instanceof String) {
+      return 1;
+    }
+    return ID_TYPE_LOWER_BOUNDS.size();
+  }
 
-    FindOptions options = new FindOptions().setSkip((page - 1) * limit).setLimit(limit);
-    client.findWithOptions(VEGETABLE_COLLECTION, new JsonObject(), options, event -> {
+  /**
+   * Explains how the query matching {@code filter} runs: the stages of the winning plan, the indexes it uses, and how
+   * many keys and documents it examines to return its documents. The servers older than 3.0, which have no
+   * {@code explain} command, explain the query run with the {@code $explain} modifier instead.
+   *
+   * @param sort  the sort of the query, {@code null} for none
+   * @param limit the maximum number of documents returned, 0 for no limit
+   */
+  public Future<JsonObject> explain(JsonObject filter, JsonObject sort, int limit) {
+    Future<JsonObject> explainResult = Future.future();
+    JsonObject find = new JsonObject()
+      .put("find", VEGETABLE_COLLECTION)
+      .put("filter", filter);
+    if (sort != null) {
+      find.put("sort", sort);
+    }
+    if (limit > 0) {
+      find.put("limit", limit);
+    }
+    JsonObject command = new JsonObject()
+      .put("explain", find)
+      .put("verbosity", "executionStats");
+    client.runCommand("explain", command, event -> {
       if (event.succeeded()) {
-        JsonArray pageVegetables = event.map(jsonObjects -> {
-          JsonArray jsonArray = new JsonArray();
-          for (JsonObject object : jsonObjects) {
-            jsonArray.add(object);
-          }
-          return jsonArray;
-        }).result();
-        returnedPage.complete(new JsonObject().put("result", pageVegetables));
+        explainResult.complete(explanation(event.result()));
+      } else if (event.cause() instanceof MongoCommandException
+        && ((MongoCommandException) event.cause()).getErrorCode() == COMMAND_NOT_FOUND) {
+        legacyExplain(filter, sort, limit).setHandler(explainResult);
+      } else {
+        explainResult.fail(event.cause());
       }
     });
-    return returnedPage;
+    return explainResult;
+  }
+
+  /**
+   * @param explained the answer of the {@code explain} command
+   */
+  private static JsonObject explanation(JsonObject explained) {
+    JsonObject winningPlan = explained.getJsonObject("queryPlanner").getJsonObject("winningPlan");
+    JsonObject stats = explained.getJsonObject("executionStats");
+    JsonArray stages = new JsonArray();
+    JsonArray indexes = new JsonArray();
+    planStages(winningPlan, stages, indexes);
+    return report(stages, indexes, stats.getLong("totalKeysExamined", 0L), stats.getLong("totalDocsExamined", 0L),
+      stats.getLong("nReturned", 0L), stats.getLong("executionTimeMillis", 0L), winningPlan);
+  }
+
+  /**
+   * Runs the query with the {@code $explain} modifier, which 2.6 servers answer with a single document describing the
+   * cursor of the query. The query is sent with its modifiers, so that the driver doesn't wrap it again.
+   */
+  private Future<JsonObject> legacyExplain(JsonObject filter, JsonObject sort, int limit) {
+    Future<JsonObject> explainResult = Future.future();
+    JsonObject query = new JsonObject().put("$query", filter).put("$explain", true);
+    if (sort != null) {
+      query.put("$orderby", sort);
+    }
+    client.findWithOptions(VEGETABLE_COLLECTION, query, new FindOptions().setLimit(limit), event -> {
+      if (event.failed()) {
+        explainResult.fail(event.cause());
+        return;
+      }
+      if (event.result().isEmpty()) {
+        explainResult.fail(new IllegalStateException("The server did not explain the query"));
+        return;
+      }
+      JsonObject explained = event.result().get(0);
+      // e.g. "BasicCursor", or "BtreeCursor name_1 reverse"
+      String[] cursor = explained.getString("cursor", "").split(" ");
+      JsonArray stages = new JsonArray();
+      JsonArray indexes = new JsonArray();
+      if ("BtreeCursor".equals(cursor[0]) && cursor.length > 1) {
+        stages.add("FETCH").add("IXSCAN");
+        indexes.add(cursor[1]);
+      } else {
+        stages.add("COLLSCAN");
+      }
+      explainResult.complete(report(stages, indexes, explained.getLong("nscanned", 0L),
+        explained.getLong("nscannedObjects", 0L), explained.getLong("n", 0L), explained.getLong("millis", 0L),
+        explained));
+    });
+    return explainResult;
+  }
+
+  private static JsonObject report(JsonArray stages, JsonArray indexes, long keysExamined, long examined,
+                                   long returned, long executionTimeMillis, JsonObject winningPlan) {
+    return new JsonObject()
+      .put("stages", stages)
+      .put("indexes", indexes)
+      .put("collectionScan", stages.contains("COLLSCAN"))
+      .put("keysExamined", keysExamined)
+      .put("docsExamined", examined)
+      .put("docsReturned", returned)
+      // 1 when each examined document is returned, the higher the more the query scans for nothing
+      .put("examinedPerReturned", returned == 0 ? (double) examined : (double) examined / returned)
+      .put("executionTimeMillis", executionTimeMillis)
+      .put("winningPlan", winningPlan);
+  }
+
+  /**
+   * Collects the stages of {@code plan}, from the root to the leaves, and the indexes they scan.
+   */
+  private static void planStages(JsonObject plan, JsonArray stages, JsonArray indexes) {
+    stages.add(plan.getString("stage"));
+    if (plan.getString("indexName") != null && !indexes.contains(plan.getString("indexName"))) {
+      indexes.add(plan.getString("indexName"));
+    }
+    if (plan.getJsonObject("inputStage") != null) {
+      planStages(plan.getJsonObject("inputStage"), stages, indexes);
+    }
+    JsonArray inputStages = plan.getJsonArray("inputStages", new JsonArray());
+    for (int i = 0; i < inputStages.size(); i++) {
+      planStages(inputStages.getJsonObject(i), stages, indexes);
+    }
   }
 
   public Future<JsonObject> delete(String id) {
@@ -157,37 +393,49 @@ public class MongoDBVegetableStore {
   }
 
   public Future<JsonObject> multipleAdd(JsonArray data) {
-
-    Future<JsonObject> multipleAddResult = Future.future();
-    List<BulkOperation> operations = new ArrayList<>();
-
+    List<BulkOperation> operations = new ArrayList<>(data.size());
     for (int i = 0; i < data.size(); i++) {
-      operations.add(BulkOperation.createInsert(data.getJsonObject(i)));
+      operations.add(BulkOperation.createInsert(forInsert(data.getJsonObject(i))));
     }
+    return bulkWrite(operations);
+  }
 
-    JsonObject withoutStockQuery = new JsonObject()
-      .put("stock", new JsonObject().put("$exists", false));
-    JsonObject updateTo = new JsonObject()
-      .put("$set", new JsonObject().put("stock", 0));
-
-    operations.add(BulkOperation.createUpdate(withoutStockQuery, updateTo));
-
-    client.bulkWrite(VEGETABLE_COLLECTION, operations, event -> {
-      if (event.succeeded()) {
-        multipleAddResult.complete(event.result().toJson());
-      } else {
-        multipleAddResult.fail(event.cause());
-      }
-    });
+  /**
+   * Inserts the documents with a single bulk write, in the configured order.
+   *
+   * @return the counts of the bulk write, or a {@link PartialBulkWriteException} reporting how many documents were
+   * inserted besides the failed ones
+   */
+  public Future<JsonObject> insertChunk(List<JsonObject> documents) {
+    List<BulkOperation> operations = new ArrayList<>(documents.size());
+    for (JsonObject document : documents) {
+      operations.add(BulkOperation.createInsert(forInsert(document)));
+    }
+    Future<JsonObject> insertResult = Future.future();
+    new BulkDispatch(Collections.singletonList(operations), insertResult).start();
+    return insertResult;
+  }
 
-    return multipleAddResult;
+  /**
+   * @return {@code document}, with a {@code stock} of 0 if it has none, and with a string id if it has none, like
+   * the ids {@link MongoClient#insert} gives
+   */
+  private static JsonObject forInsert(JsonObject document) {
+    if (document.containsKey("stock") && document.containsKey("_id")) {
+      return document;
+    }
+    JsonObject prepared = document.copy();
+    if (!prepared.containsKey("stock")) {
+      prepared.put("stock", 0);
+    }
+    if (!prepared.containsKey("_id")) {
+      prepared.put("_id", new ObjectId().toHexString());
+    }
+    return prepared;
   }
 
   public Future<JsonObject> multipleReplace(JsonArray data) {
-
-    Future<JsonObject> multipleAddResult = Future.future();
-    List<BulkOperation> operations = new ArrayList<>();
-
+    List<BulkOperation> operations = new ArrayList<>(data.size());
     for (int i = 0; i < data.size(); i++) {
       JsonObject object = data.getJsonObject(i);
       String id = object.getString("_id");
@@ -196,44 +444,138 @@ public class MongoDBVegetableStore {
       }
       operations.add(BulkOperation.createReplace(new JsonObject().put("_id", id), object));
     }
-
-    client.bulkWrite(VEGETABLE_COLLECTION, operations, event -> {
-      if (event.succeeded()) {
-        multipleAddResult.complete(event.result().toJson());
-      } else {
-        multipleAddResult.fail(event.cause());
-      }
-    });
-
-    return multipleAddResult;
+    return bulkWrite(operations);
   }
 
   public Future<JsonObject> multipleDelete(JsonObject data) {
-
-    Future<JsonObject> multipleAddResult = Future.future();
-    List<BulkOperation> operations = new ArrayList<>();
-
     JsonArray ids = data.getJsonArray("ids");
-
-
     if (Objects.isNull(ids) || ids.size() == 0) {
       return Future.failedFuture("Ids are required");
     }
 
+    List<BulkOperation> operations = new ArrayList<>(ids.size());
     for (int i = 0; i < ids.size(); i++) {
       String id = ids.getString(i);
       operations.add(BulkOperation.createDelete(new JsonObject().put("_id", id)));
     }
+    return bulkWrite(operations);
+  }
 
-    client.bulkWrite(VEGETABLE_COLLECTION, operations, event -> {
-      if (event.succeeded()) {
-        multipleAddResult.complete(event.result().toJson());
+  /**
+   * Sends the operations in chunks of {@code bulkChunkSize}, with at most {@code bulkConcurrency} chunks written at
+   * the same time. An ordered write sends no chunk after a failure, an unordered one sends all of them whatever the
+   * outcome of the others.
+   *
+   * @return the counts of all the chunks, or a {@link PartialBulkWriteException} reporting the counts of the applied
+   * operations and the errors of the failed ones, indexed in {@code operations}
+   */
+  private Future<JsonObject> bulkWrite(List<BulkOperation> operations) {
+    List<List<BulkOperation>> chunks = new ArrayList<>();
+    for (int i = 0; i < operations.size(); i += bulkChunkSize) {
+      chunks.add(operations.subList(i, Math.min(i + bulkChunkSize, operations.size())));
+    }
+    Future<JsonObject> result = Future.future();
+    new BulkDispatch(chunks, result).start();
+    return result;
+  }
+
+  private final class BulkDispatch {
+    private final List<List<BulkOperation>> chunks;
+    private final Future<JsonObject> result;
+    private final JsonObject totals = new JsonObject()
+      .put(MongoClientBulkWriteResult.INSERTED_COUNT, 0L)
+      .put(MongoClientBulkWriteResult.MATCHED_COUNT, 0L)
+      .put(MongoClientBulkWriteResult.DELETED_COUNT, 0L)
+      .put(MongoClientBulkWriteResult.MODIFIED_COUNT, 0L)
+      .put(MongoClientBulkWriteResult.UPSERTS, new JsonArray());
+    private final JsonArray writeErrors = new JsonArray();
+    private int next;
+    private int inFlight;
+
+    BulkDispatch(List<List<BulkOperation>> chunks, Future<JsonObject> result) {
+      this.chunks = chunks;
+      this.result = result;
+    }
+
+    void start() {
+      if (chunks.isEmpty()) {
+        result.complete(totals);
+        return;
+      }
+      while (inFlight < bulkConcurrency && next < chunks.size()) {
+        dispatch();
+      }
+    }
+
+    private void dispatch() {
+      int index = next++;
+      inFlight++;
+      client.bulkWriteWithOptions(VEGETABLE_COLLECTION, chunks.get(index), bulkOptions, written -> {
+        inFlight--;
+        if (written.succeeded()) {
+          add(written.result(), index * bulkChunkSize);
+        } else {
+          addFailure(written.cause(), index);
+        }
+        if (next < chunks.size() && (writeErrors.isEmpty() || !bulkOptions.isOrdered())) {
+          dispatch();
+        } else if (inFlight == 0) {
+          if (writeErrors.isEmpty()) {
+            result.complete(totals);
+          } else {
+            result.fail(new PartialBulkWriteException(writeErrors.size() + " bulk write errors, the first one: "
+              + writeErrors.getJsonObject(0).getString("errmsg"),
+              totals.copy().put("writeErrors", writeErrors)));
+          }
+        }
+      });
+    }
+
+    /**
+     * Counts the operations the server applied before or besides the failed ones, and records an error for each of
+     * those. A chunk that failed as a whole, e.g. on a network error, gets one error with the count of its operations.
+     */
+    private void addFailure(Throwable cause, int index) {
+      int offset = index * bulkChunkSize;
+      if (cause instanceof MongoBulkWriteException) {
+        MongoBulkWriteException bulkFailure = (MongoBulkWriteException) cause;
+        // the operations of this store never upsert
+        BulkWriteResult applied = bulkFailure.getWriteResult();
+        increment(MongoClientBulkWriteResult.INSERTED_COUNT, applied.getInsertedCount());
+        increment(MongoClientBulkWriteResult.MATCHED_COUNT, applied.getMatchedCount());
+        increment(MongoClientBulkWriteResult.DELETED_COUNT, applied.getDeletedCount());
+        increment(MongoClientBulkWriteResult.MODIFIED_COUNT,
+          applied.isModifiedCountAvailable() ? applied.getModifiedCount() : 0);
+        for (BulkWriteError error : bulkFailure.getWriteErrors()) {
+          writeErrors.add(new JsonObject()
+            .put(MongoClientBulkWriteResult.INDEX, offset + error.getIndex())
+            .put("code", error.getCode())
+            .put("errmsg", error.getMessage()));
+        }
       } else {
-        multipleAddResult.fail(event.cause());
+        writeErrors.add(new JsonObject()
+          .put(MongoClientBulkWriteResult.INDEX, offset)
+          .put("count", chunks.get(index).size())
+          .put("errmsg", String.valueOf(cause.getMessage())));
       }
-    });
+    }
+
+    /**
+     * @param offset the index of the first operation of the chunk
+     */
+    private void add(MongoClientBulkWriteResult chunk, int offset) {
+      increment(MongoClientBulkWriteResult.INSERTED_COUNT, chunk.getInsertedCount());
+      increment(MongoClientBulkWriteResult.MATCHED_COUNT, chunk.getMatchedCount());
+      increment(MongoClientBulkWriteResult.DELETED_COUNT, chunk.getDeletedCount());
+      increment(MongoClientBulkWriteResult.MODIFIED_COUNT, chunk.getModifiedCount());
+      for (JsonObject upsert : chunk.getUpserts()) {
+        totals.getJsonArray(MongoClientBulkWriteResult.UPSERTS).add(upsert.copy()
+          .put(MongoClientBulkWriteResult.INDEX, upsert.getInteger(MongoClientBulkWriteResult.INDEX) + offset));
+      }
+    }
 
-    return multipleAddResult;
+    private void increment(String count, long value) {
+      totals.put(count, totals.getLong(count) + value);
+    }
   }
 }
-
@@ -0,0 +1,38 @@
+package io.vertx.openshift.mongodb.models;
+
+import io.vertx.core.json.DecodeException;
+import io.vertx.core.json.JsonObject;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Continuation token of the pages, holding the id of the last document of a page. The id keeps its BSON type, so the
+ * documents whose id is an ObjectId page the same way as the others.
+ */
+public final class PageToken {
+
+  private PageToken() {
+  }
+
+  public static String encode(Object lastId) {
+    byte[] json = new JsonObject().put("_id", lastId).encode().getBytes(StandardCharsets.UTF_8);
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(json);
+  }
+
+  /**
+   * @throws IllegalArgumentException if {@code token} was not returned by {@link #encode(Object)}
+   */
+  public static Object decode(String token) {
+    try {
+      JsonObject json = new JsonObject(new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8));
+      Object lastId = json.getValue("_id");
+      if (lastId == null) {
+        throw new IllegalArgumentException("the token holds no id");
+      }
+      return lastId;
+    } catch (DecodeException e) {
+      throw new IllegalArgumentException("the token is not valid", e);
+    }
+  }
+}
@@ -15,7 +15,9 @@ import java.io.IOException;
 import static io.restassured.RestAssured.*;
 import static io.vertx.it.openshift.utils.Ensure.ensureThat;
 import static io.vertx.it.openshift.utils.Kube.awaitUntilPodIsReady;
+import static org.hamcrest.core.IsCollectionContaining.hasItem;
 import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.Assert.assertEquals;
 
 /**
  * Integration tests for internal mongodb db
@@ -135,7 +137,7 @@ public class MongodbInternalDbIT extends AbstractInternalDBTestClass {
       addResponse.then().assertThat().statusCode(201);
     });
     //GET
-    Response getPageResponse = get(API_LIST_ROUTE+"page/1");
+    Response getPageResponse = get(API_LIST_ROUTE+"page");
     ensureThat("Get saved data", ()-> getPageResponse.then().assertThat().statusCode(200));
     JSONObject givenData = new JSONObject(getPageResponse.getBody().prettyPrint());
     JSONArray result = givenData.getJSONArray("result");
@@ -163,4 +165,56 @@ public class MongodbInternalDbIT extends AbstractInternalDBTestClass {
     });
 
   }
+
+  @Test
+  public void pageMixedIdsTest() {
+    // documents without an id get a string one, those with an $oid keep an ObjectId
+    JSONArray testData = new JSONArray();
+    for (int i = 0; i < 3; i++) {
+      testData.put(new JSONObject().put("name", "Paged" + i));
+      testData.put(new JSONObject().put("name", "PagedOid" + i)
+        .put("_id", new JSONObject().put("$oid", String.format("5c5c5c5c5c5c5c5c5c5c5c5%d", i))));
+    }
+    ensureThat("We can bulk create vegetables with mixed ids", () ->
+      given().body(testData.toString()).contentType(ContentType.JSON).post(API_LIST_ROUTE + "add")
+        .then().assertThat().statusCode(201)
+    );
+
+    int paged = 0;
+    String after = null;
+    do {
+      Response pageResponse = after == null
+        ? given().queryParam("limit", 2).get(API_LIST_ROUTE + "page")
+        : given().queryParam("limit", 2).queryParam("after", after).get(API_LIST_ROUTE + "page");
+      pageResponse.then().assertThat().statusCode(200);
+      JSONObject page = new JSONObject(pageResponse.getBody().asString());
+      JSONArray result = page.getJSONArray("result");
+      for (int i = 0; i < result.length(); i++) {
+        if (result.getJSONObject(i).getString("name").startsWith("Paged")) {
+          paged++;
+        }
+      }
+      after = page.isNull("next") ? null : page.getString("next");
+    } while (after != null);
+
+    int pagedCount = paged;
+    ensureThat("the pages reach the documents of both id types", () -> assertEquals(6, pagedCount));
+  }
+
+  @Test
+  public void explainTest() {
+    ensureThat("we can create a vegetable to explain", () -> createItem("Explained")
+      .then().assertThat().statusCode(201)
+    );
+
+    // the IT server is a 2.6 one, which explains with the $explain query modifier
+    ensureThat("the query by name is explained", () ->
+      given().queryParam("filter", new JSONObject().put("name", "Explained").toString())
+        .get(API_LIST_ROUTE + "explain")
+        .then().assertThat().statusCode(200)
+        .body("indexes", hasItem("name_1"))
+        .body("collectionScan", equalTo(false))
+        .body("docsReturned", equalTo(1))
+    );
+  }
 }
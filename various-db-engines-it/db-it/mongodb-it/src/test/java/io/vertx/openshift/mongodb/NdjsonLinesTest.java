@@ -0,0 +1,88 @@
+package io.vertx.openshift.mongodb;
+
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.streams.ReadStream;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class NdjsonLinesTest {
+
+  @Test
+  public void testKeepsTheLastLineWithoutNewline() {
+    assertEquals(Arrays.asList("{\"name\":\"Carrots\"}", "{\"name\":\"Onions\"}"),
+      lines("{\"name\":\"Carrots\"}\n{\"na", "me\":\"Onions\"}"));
+  }
+
+  @Test
+  public void testAddsNoLineAfterTheLastNewline() {
+    assertEquals(Arrays.asList("{\"name\":\"Carrots\"}", "{\"name\":\"Onions\"}"),
+      lines("{\"name\":\"Carrots\"}\n", "{\"name\":\"Onions\"}\n"));
+  }
+
+  @Test
+  public void testEmptyBodyHasNoLine() {
+    assertEquals(new ArrayList<>(), lines());
+  }
+
+  private static List<String> lines(String... chunks) {
+    BodyStream body = new BodyStream();
+    List<String> lines = new ArrayList<>();
+    boolean[] ended = new boolean[1];
+    NdjsonLines.parse(body, 1024)
+      .endHandler(end -> ended[0] = true)
+      .handler(line -> lines.add(line.toString()));
+    for (String chunk : chunks) {
+      body.handler.handle(Buffer.buffer(chunk));
+    }
+    body.endHandler.handle(null);
+    assertTrue(ended[0]);
+    return lines;
+  }
+
+  /**
+   * A request body, whose chunks are pushed by the test.
+   */
+  private static final class BodyStream implements ReadStream<Buffer> {
+    private Handler<Buffer> handler;
+    private Handler<Void> endHandler;
+
+    @Override
+    public ReadStream<Buffer> exceptionHandler(Handler<Throwable> handler) {
+      return this;
+    }
+
+    @Override
+    public ReadStream<Buffer> handler(Handler<Buffer> handler) {
+      this.handler = handler;
+      return this;
+    }
+
+    @Override
+    public ReadStream<Buffer> pause() {
+      return this;
+    }
+
+    @Override
+    public ReadStream<Buffer> resume() {
+      return this;
+    }
+
+    @Override
+    public ReadStream<Buffer> fetch(long amount) {
+      return this;
+    }
+
+    @Override
+    public ReadStream<Buffer> endHandler(Handler<Void> endHandler) {
+      this.endHandler = endHandler;
+      return this;
+    }
+  }
+}
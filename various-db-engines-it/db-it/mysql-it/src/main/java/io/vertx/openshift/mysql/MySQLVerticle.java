@@ -16,6 +16,12 @@ public class MySQLVerticle extends AbstractDatabaseVerticle {
   public void start() throws Exception {
     Router router = Router.router(vertx);
     router.route().handler(BodyHandler.create());
+    router.get("/api/vegetables/page").handler(this::getPage);
+    router.get("/api/vegetables/stats").handler(this::getStats);
+    router.get("/api/vegetables/changes").handler(this::getChanges);
+    router.post("/api/vegetables/add").handler(this::addMany);
+    router.put("/api/vegetables/update").handler(this::updateMany);
+    router.delete("/api/vegetables/delete").handler(this::deleteMany);
     router.route("/api/vegetables/:id").handler(this::validateId);
     router.get("/api/vegetables").handler(this::getAll);
     router.post("/api/vegetables").handler(this::addOne);
@@ -24,10 +30,11 @@ public class MySQLVerticle extends AbstractDatabaseVerticle {
     router.delete("/api/vegetables/:id").handler(this::deleteOne);
 
     router.get("/healthcheck").handler(rc -> rc.response().end("OK"));
+    router.get("/metrics").handler(this::getMetrics);
 
     JsonObject config = TestUtils.allocateDatabase("mysql", isExternalDB);
 
-    JDBCClient jdbcClient = JDBCClient.createShared(vertx, config);
+    JDBCClient jdbcClient = createJdbcClient(config);
 
     initDatabase(vertx, jdbcClient)
       .andThen(initHttpServer(router, jdbcClient))
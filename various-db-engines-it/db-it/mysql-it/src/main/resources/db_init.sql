@@ -1,9 +1,19 @@
 CREATE TABLE IF NOT EXISTS vegetables(
   id        SERIAL NOT NULL PRIMARY KEY,
   name      VARCHAR(40) NOT NULL,
-  amount    INT
+  amount    INT,
+  version   BIGINT NOT NULL DEFAULT 1
 );
 
+-- the tables created before the optimistic locking have no version, MySQL can't add a column only if it is missing
+SET @add_version = (SELECT IF(COUNT(*) = 0,
+  'ALTER TABLE vegetables ADD COLUMN version BIGINT NOT NULL DEFAULT 1', 'SELECT 1')
+  FROM information_schema.columns
+  WHERE table_schema = DATABASE() AND table_name = 'vegetables' AND column_name = 'version');
+PREPARE add_version FROM @add_version;
+EXECUTE add_version;
+DEALLOCATE PREPARE add_version;
+
 DELETE FROM vegetables;
 
 INSERT INTO vegetables (name, amount) values ('Carrots', 10);
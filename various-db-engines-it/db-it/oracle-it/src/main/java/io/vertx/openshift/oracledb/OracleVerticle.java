@@ -2,31 +2,46 @@ package io.vertx.openshift.oracledb;
 
 import io.reactivex.Completable;
 import io.reactivex.Single;
+import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.openshift.utils.AbstractDatabaseVerticle;
 import io.vertx.openshift.utils.TestUtils;
-import io.vertx.reactivex.core.http.HttpServer;
 import io.vertx.reactivex.ext.jdbc.JDBCClient;
 import io.vertx.reactivex.ext.web.Router;
-import io.vertx.reactivex.ext.web.RoutingContext;
 import io.vertx.reactivex.ext.web.handler.BodyHandler;
 
-import static io.vertx.openshift.utils.Errors.error;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author Martin Spisiak (mspisiak@redhat.com) on 12/10/17.
  */
 public class OracleVerticle extends AbstractDatabaseVerticle {
-  private final static String VEGETABLE_TABLE_EXISTS_QUERY = "select count(*) as count\n" +
-    "from all_objects\n" +
-    "where object_type in ('TABLE','VIEW')\n" +
-    "and object_name = 'vegetables'";
+  /**
+   * Looks in the tables of the current schema only, the one {@link #DROP_VEGETABLE_TABLE} drops from.
+   */
+  private final static String VEGETABLE_TABLE_EXISTS_QUERY = "SELECT count(*) FROM user_tables WHERE table_name = ?";
   private final static String DROP_VEGETABLE_TABLE = "DROP TABLE vegetables";
 
+  /**
+   * Time, in milliseconds, the verticle can take to get ready before its startup is abandoned.
+   */
+  private long startupTimeout = Long.valueOf(System.getenv().getOrDefault("startupTimeout", "60000"));
+  /**
+   * The time, in milliseconds, spent in each startup phase.
+   */
+  private final JsonObject startup = new JsonObject();
+
   @Override
   public void start() throws Exception {
+    long start = System.nanoTime();
     Router router = Router.router(vertx);
     router.route().handler(BodyHandler.create());
+    router.get("/api/vegetables/page").handler(this::getPage);
+    router.get("/api/vegetables/stats").handler(this::getStats);
+    router.get("/api/vegetables/changes").handler(this::getChanges);
+    router.post("/api/vegetables/add").handler(this::addMany);
+    router.put("/api/vegetables/update").handler(this::updateMany);
+    router.delete("/api/vegetables/delete").handler(this::deleteMany);
     router.route("/api/vegetables/:id").handler(this::validateId);
     router.get("/api/vegetables").handler(this::getAll);
     router.post("/api/vegetables").handler(this::addOne);
@@ -35,73 +50,71 @@ public class OracleVerticle extends AbstractDatabaseVerticle {
     router.delete("/api/vegetables/:id").handler(this::deleteOne);
 
     router.get("/healthcheck").handler(rc -> rc.response().end("OK"));
+    router.get("/metrics").handler(this::getMetrics);
 
     JsonObject config = TestUtils.allocateDatabase("oracle", true);
 
-    JDBCClient jdbcClient = JDBCClient.createShared(vertx, config);
-
-    vegetableTableExists(jdbcClient).subscribe(VegetableTableExists -> {
-      Completable firstAction = initDatabase(vertx, jdbcClient);
-      if (VegetableTableExists) {
-        firstAction = dropVegetableTable(jdbcClient).andThen(initDatabase(vertx, jdbcClient));
-      }
-      firstAction
-        .andThen(initHttpServer(router, jdbcClient))
-        .subscribe(
-          (http) -> System.out.println("Server ready on port " + http.actualPort()),
-          Throwable::printStackTrace
-        );
-    });
-  }
-
-  @Override
-  protected Single<HttpServer> initHttpServer(Router router, JDBCClient client) {
-    this.store = new JdbcOracleVegetableStore(client);
-    return vertx
-      .createHttpServer()
-      .requestHandler(router::accept)
-      .rxListen(8080);
-  }
-
-  @Override
-  protected void addOne(RoutingContext ctx) {
-    JsonObject item;
-    try {
-      item = ctx.getBodyAsJson();
-    } catch (RuntimeException e) {
-      error(ctx, 415, "invalid payload");
-      return;
-    }
-
-    if (item == null) {
-      error(ctx, 415, "invalid payload");
-      return;
-    }
+    JDBCClient jdbcClient = createJdbcClient(config);
+    startup.put("createClientMs", elapsedMs(start));
 
-    store.create(item)
+    dropVegetableTableIfExists(jdbcClient)
+      .andThen(timed("initDatabase", initDatabase(vertx, jdbcClient)))
+      .andThen(Single.defer(() -> {
+        long phaseStart = System.nanoTime();
+        return initHttpServer(router, jdbcClient)
+          .doOnSuccess(http -> startup.put("initHttpServerMs", elapsedMs(phaseStart)));
+      }))
+      .timeout(startupTimeout, TimeUnit.MILLISECONDS)
       .subscribe(
-        json -> ((JdbcOracleVegetableStore) store).read(json.getString("rowId"))
-          .subscribe(entries -> ctx.response()
-            .putHeader("Location", "/api/vegetables/" + json.getLong("id"))
-            .putHeader("Content-Type", "application/json")
-            .setStatusCode(201)
-            .end(entries.encodePrettily())),
-        err -> {
-          writeError(ctx, err);
-        }
+        (http) -> {
+          startup.put("totalMs", elapsedMs(start));
+          System.out.println("Server ready on port " + http.actualPort() + " in " + startup.getLong("totalMs")
+            + " ms: " + startup.encode());
+        },
+        Throwable::printStackTrace
       );
   }
 
-  private Single<Boolean> vegetableTableExists(JDBCClient jdbc) {
+  /**
+   * Drops the table left by a previous run. The check and the drop share a single connection, which is released
+   * whatever their outcome, so the script run afterwards has the whole pool.
+   */
+  private Completable dropVegetableTableIfExists(JDBCClient jdbc) {
+    long start = System.nanoTime();
     return jdbc.rxGetConnection()
-      .flatMap(conn -> conn
-        .rxQuery(VEGETABLE_TABLE_EXISTS_QUERY)
-        .map(resultSet -> resultSet.getRows().get(0).getLong("COUNT") != 0));
+      .flatMapCompletable(conn -> {
+        startup.put("getConnectionMs", elapsedMs(start));
+        long checkStart = System.nanoTime();
+        return conn
+          .rxQueryWithParams(VEGETABLE_TABLE_EXISTS_QUERY, new JsonArray().add(dialect.identifier("vegetables")))
+          .map(resultSet -> resultSet.getResults().get(0).getLong(0) != 0)
+          .doOnSuccess(exists -> startup.put("tableCheckMs", elapsedMs(checkStart)))
+          .flatMapCompletable(exists -> exists
+            ? timed("dropTable", conn.rxExecute(DROP_VEGETABLE_TABLE))
+            : Completable.complete())
+          .doFinally(conn::close);
+      });
   }
 
-  private Completable dropVegetableTable(JDBCClient jdbc) {
-    return jdbc.rxGetConnection()
-      .flatMap(conn -> conn.rxQuery(DROP_VEGETABLE_TABLE)).toCompletable();
+  /**
+   * Records the time {@code phase} takes, from its subscription to its completion.
+   */
+  private Completable timed(String phase, Completable completable) {
+    return Completable.defer(() -> {
+      long start = System.nanoTime();
+      return completable.doOnComplete(() -> startup.put(phase + "Ms", elapsedMs(start)));
+    });
   }
 
+  private static long elapsedMs(long start) {
+    return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+  }
+
+  /**
+   * @return the metrics of {@link AbstractDatabaseVerticle}, with the duration of the startup phases
+   */
+  @Override
+  protected JsonObject metrics() {
+    return super.metrics().put("startup", startup.copy());
+  }
 }
@@ -1,7 +1,8 @@
 CREATE TABLE vegetables (
-  id        NUMBER GENERATED ALWAYS as IDENTITY(START with 1 INCREMENT by 1),
+  id        NUMBER GENERATED BY DEFAULT as IDENTITY(START with 1 INCREMENT by 1),
   name      VARCHAR2(40) NOT NULL,
   amount    INT,
+  version   NUMBER(19) DEFAULT 1 NOT NULL,
   CONSTRAINT vegetables_pk PRIMARY KEY (id));
 
 DELETE FROM vegetables;
@@ -1,7 +1,9 @@
 package io.vertx.openshift.postgresql;
 
+import io.reactiverse.reactivex.pgclient.PgClient;
 import io.vertx.core.json.JsonObject;
 import io.vertx.openshift.utils.AbstractDatabaseVerticle;
+import io.vertx.openshift.utils.DataStore;
 import io.vertx.openshift.utils.TestUtils;
 import io.vertx.reactivex.ext.jdbc.JDBCClient;
 import io.vertx.reactivex.ext.web.Router;
@@ -12,10 +14,30 @@ import io.vertx.reactivex.ext.web.handler.BodyHandler;
  */
 public class PostgreSQLVerticle extends AbstractDatabaseVerticle {
 
+  /**
+   * Client used by the store, either {@code jdbc} or {@code reactive}.
+   */
+  private String storeClient = System.getenv().getOrDefault("storeClient", "jdbc");
+  /**
+   * Maximum number of connections of the reactive client pool.
+   */
+  private int reactivePoolSize = Integer.valueOf(System.getenv().getOrDefault("reactivePoolSize", "4"));
+  /**
+   * Maximum number of queries pipelined on a reactive client connection.
+   */
+  private int reactivePipeliningLimit = Integer.valueOf(System.getenv().getOrDefault("reactivePipeliningLimit", "256"));
+  private JsonObject dbConfig;
+
   @Override
   public void start() throws Exception {
     Router router = Router.router(vertx);
     router.route().handler(BodyHandler.create());
+    router.get("/api/vegetables/page").handler(this::getPage);
+    router.get("/api/vegetables/stats").handler(this::getStats);
+    router.get("/api/vegetables/changes").handler(this::getChanges);
+    router.post("/api/vegetables/add").handler(this::addMany);
+    router.put("/api/vegetables/update").handler(this::updateMany);
+    router.delete("/api/vegetables/delete").handler(this::deleteMany);
     router.route("/api/vegetables/:id").handler(this::validateId);
     router.get("/api/vegetables").handler(this::getAll);
     router.post("/api/vegetables").handler(this::addOne);
@@ -24,10 +46,11 @@ public class PostgreSQLVerticle extends AbstractDatabaseVerticle {
     router.delete("/api/vegetables/:id").handler(this::deleteOne);
 
     router.get("/healthcheck").handler(rc -> rc.response().end("OK"));
+    router.get("/metrics").handler(this::getMetrics);
 
-    JsonObject config = TestUtils.allocateDatabase("postgresql", isExternalDB);
+    dbConfig = TestUtils.allocateDatabase("postgresql", isExternalDB);
 
-    JDBCClient jdbcClient = JDBCClient.createShared(vertx, config);
+    JDBCClient jdbcClient = createJdbcClient(dbConfig);
 
     initDatabase(vertx, jdbcClient)
       .andThen(initHttpServer(router, jdbcClient))
@@ -37,4 +60,12 @@ public class PostgreSQLVerticle extends AbstractDatabaseVerticle {
       );
   }
 
+  @Override
+  protected DataStore createStore(JDBCClient client) {
+    if ("reactive".equals(storeClient)) {
+      return new ReactivePgVegetableStore(
+        PgClient.pool(vertx, ReactivePgVegetableStore.poolOptions(dbConfig, reactivePoolSize, reactivePipeliningLimit)));
+    }
+    return super.createStore(client);
+  }
 }
@@ -0,0 +1,372 @@
+package io.vertx.openshift.postgresql;
+
+import io.reactiverse.pgclient.PgPoolOptions;
+import io.reactiverse.reactivex.pgclient.PgIterator;
+import io.reactiverse.reactivex.pgclient.PgPool;
+import io.reactiverse.reactivex.pgclient.PgRowSet;
+import io.reactiverse.reactivex.pgclient.PgTransaction;
+import io.reactiverse.reactivex.pgclient.Row;
+import io.reactiverse.reactivex.pgclient.Tuple;
+import io.reactivex.Completable;
+import io.reactivex.Flowable;
+import io.reactivex.Single;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.openshift.utils.CompactJson;
+import io.vertx.openshift.utils.DataStore;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+
+import static io.vertx.openshift.utils.Vegetables.validateCreate;
+import static io.vertx.openshift.utils.Vegetables.validateUpdate;
+
+/**
+ * {@link DataStore} talking the PostgreSQL wire protocol with the non-blocking reactive client: no worker thread is
+ * involved and the queries sent on a connection are pipelined.
+ * <p>
+ * The numeric parameters compared to the id column are cast to {@code bigint}, the client only binds {@link Long}
+ * values to such parameters.
+ */
+public class ReactivePgVegetableStore implements DataStore {
+
+  private static final String INSERT = "INSERT INTO vegetables (name, amount) VALUES ($1, $2) RETURNING id, name, amount, version";
+
+  private static final String SELECT_ONE = "SELECT id, name, amount, version FROM vegetables WHERE id = $1::bigint";
+
+  private static final String SELECT_ALL = "SELECT id, name, amount FROM vegetables";
+
+  private static final String UPDATE = "UPDATE vegetables SET name = $1, amount = $2, version = version + 1 "
+    + "WHERE id = $3::bigint";
+
+  private static final String UPDATE_VERSION = "UPDATE vegetables SET name = $1, amount = $2, version = version + 1 "
+    + "WHERE id = $3::bigint AND version = $4::bigint RETURNING version";
+
+  /**
+   * Also moves the SERIAL sequence past the id, in the same round trip, so that the items created later don't collide
+   * with it.
+   */
+  private static final String UPSERT = "WITH upserted AS ("
+    + "INSERT INTO vegetables (id, name, amount) VALUES ($1::bigint, $2, $3) "
+    + "ON CONFLICT (id) DO UPDATE SET name = EXCLUDED.name, amount = EXCLUDED.amount, version = vegetables.version + 1 "
+    + "RETURNING id) "
+    + "SELECT setval('vegetables_id_seq', u.id) FROM upserted u, vegetables_id_seq s "
+    + "WHERE s.last_value < u.id OR (NOT s.is_called AND s.last_value = u.id)";
+
+  private static final String DELETE = "DELETE FROM vegetables WHERE id = $1::bigint";
+
+  private static final String SELECT_TOTALS = "SELECT COUNT(*), SUM(COALESCE(amount, 0)), MIN(COALESCE(amount, 0)), "
+    + "MAX(COALESCE(amount, 0)) FROM vegetables";
+
+  private static final String SELECT_TOP_NAMES = "SELECT name, COUNT(*), SUM(COALESCE(amount, 0)) AS total "
+    + "FROM vegetables GROUP BY name ORDER BY total DESC, name LIMIT $1";
+
+  /**
+   * Number of rows fetched at once when streaming all the items.
+   */
+  private static final int FETCH_SIZE = 128;
+
+  private static final byte[] ID_FIELD = "{\"id\":".getBytes();
+  private static final byte[] NAME_FIELD = ",\"name\":".getBytes();
+  private static final byte[] AMOUNT_FIELD = ",\"amount\":".getBytes();
+
+  private final PgPool pool;
+
+  public ReactivePgVegetableStore(PgPool pool) {
+    this.pool = pool;
+  }
+
+  @Override
+  public void close() {
+    pool.close();
+  }
+
+  /**
+   * Builds the pool options from the JDBC configuration returned by
+   * {@link io.vertx.openshift.utils.TestUtils#allocateDatabase(String, boolean)}.
+   *
+   * @param config          the JDBC configuration
+   * @param poolSize        the maximum number of connections
+   * @param pipeliningLimit the maximum number of queries in flight on a connection
+   */
+  public static PgPoolOptions poolOptions(JsonObject config, int poolSize, int pipeliningLimit) {
+    // jdbc:postgresql://host[:port]/database
+    URI uri = URI.create(config.getString("jdbcUrl").substring("jdbc:".length()));
+    return new PgPoolOptions()
+      .setHost(uri.getHost())
+      .setPort(uri.getPort() == -1 ? 5432 : uri.getPort())
+      .setDatabase(uri.getPath().substring(1))
+      .setUser(config.getString("principal"))
+      .setPassword(config.getString("credential"))
+      .setMaxSize(poolSize)
+      .setPipeliningLimit(pipeliningLimit)
+      .setCachePreparedStatements(true);
+  }
+
+  @Override
+  public Single<JsonObject> create(JsonObject item) {
+    IllegalArgumentException invalid = validateCreate(item);
+    if (invalid != null) {
+      return Single.error(invalid);
+    }
+
+    return pool.rxPreparedQuery(INSERT, Tuple.of(item.getString("name"), item.getInteger("amount", 0)))
+      .map(rows -> toRow(rows.iterator().next()));
+  }
+
+  /**
+   * Sends all the INSERTs as one pipelined batch, in a transaction.
+   */
+  @Override
+  public Single<List<JsonObject>> createAll(List<JsonObject> items) {
+    List<Tuple> batch = new ArrayList<>(items.size());
+    for (JsonObject item : items) {
+      IllegalArgumentException invalid = validateCreate(item);
+      if (invalid != null) {
+        return Single.error(invalid);
+      }
+      batch.add(Tuple.of(item.getString("name"), item.getInteger("amount", 0)));
+    }
+    if (batch.isEmpty()) {
+      return Single.just(Collections.emptyList());
+    }
+
+    return inTransaction(tx -> tx.rxPreparedBatch(INSERT, batch))
+      .map(rows -> {
+        List<JsonObject> created = new ArrayList<>(items.size());
+        PgRowSet current = rows;
+        for (int i = 0; i < items.size(); i++) {
+          created.add(toRow(current.iterator().next()));
+          current = current.next();
+        }
+        return created;
+      });
+  }
+
+  /**
+   * Streams the rows with a cursor, which PostgreSQL only keeps open within a transaction.
+   */
+  @Override
+  public Flowable<JsonObject> readAll() {
+    return streamAll().map(ReactivePgVegetableStore::toItem);
+  }
+
+  @Override
+  public Flowable<Buffer> readAllJson() {
+    return CompactJson.array(streamAll(), ReactivePgVegetableStore::writeItem);
+  }
+
+  private Flowable<Row> streamAll() {
+    return pool.rxBegin()
+      .flatMapPublisher(tx ->
+        tx.rxPrepare(SELECT_ALL)
+          .flatMapPublisher(query -> query.createStream(FETCH_SIZE, Tuple.tuple()).toFlowable())
+          .doFinally(tx::commit));
+  }
+
+  @Override
+  public Flowable<JsonObject> readPage(long afterId, int limit, JsonObject filter) {
+    if (limit < 1) {
+      return Flowable.error(new IllegalArgumentException("The limit must be positive"));
+    }
+
+    StringBuilder sql = new StringBuilder("SELECT id, name, amount FROM vegetables WHERE id > $1::bigint");
+    Tuple params = Tuple.tuple().addLong(afterId);
+    int index = 1;
+    if (filter.getString("name") != null) {
+      sql.append(" AND name = $").append(++index);
+      params.addString(filter.getString("name"));
+    }
+    if (filter.getInteger("minAmount") != null) {
+      sql.append(" AND amount >= $").append(++index);
+      params.addInteger(filter.getInteger("minAmount"));
+    }
+    if (filter.getInteger("maxAmount") != null) {
+      sql.append(" AND amount <= $").append(++index);
+      params.addInteger(filter.getInteger("maxAmount"));
+    }
+    sql.append(" ORDER BY id LIMIT $").append(++index);
+    params.addLong((long) limit);
+
+    return pool.rxPreparedQuery(sql.toString(), params)
+      .flatMapPublisher(rows -> {
+        List<JsonObject> items = new ArrayList<>(rows.size());
+        for (PgIterator it = rows.iterator(); it.hasNext(); ) {
+          items.add(toItem(it.next()));
+        }
+        return Flowable.fromIterable(items);
+      });
+  }
+
+  /**
+   * Computes the statistics with aggregate queries, so the items don't leave the database. The two queries are
+   * pipelined.
+   */
+  @Override
+  public Single<JsonObject> stats(int top) {
+    Single<JsonObject> totals = pool.rxQuery(SELECT_TOTALS)
+      .map(rows -> {
+        Row row = rows.iterator().next();
+        Long totalAmount = row.getLong(1);
+        return new JsonObject()
+          .put("count", row.getLong(0).intValue())
+          .put("totalAmount", totalAmount == null ? 0L : totalAmount)
+          .put("minAmount", row.getInteger(2))
+          .put("maxAmount", row.getInteger(3));
+      });
+    if (top < 1) {
+      return totals.map(stats -> stats.put("top", new JsonArray()));
+    }
+    Single<JsonArray> topNames = pool.rxPreparedQuery(SELECT_TOP_NAMES, Tuple.of((long) top))
+      .map(rows -> {
+        JsonArray names = new JsonArray();
+        for (PgIterator it = rows.iterator(); it.hasNext(); ) {
+          Row row = it.next();
+          names.add(new JsonObject()
+            .put("name", row.getString(0))
+            .put("items", row.getLong(1).intValue())
+            .put("amount", row.getLong(2)));
+        }
+        return names;
+      });
+    return Single.zip(totals, topNames, (stats, names) -> stats.put("top", names));
+  }
+
+  @Override
+  public Single<JsonObject> read(long id) {
+    return pool.rxPreparedQuery(SELECT_ONE, Tuple.of(id))
+      .map(rows -> {
+        if (rows.size() == 0) {
+          throw new NoSuchElementException("Item '" + id + "' not found");
+        }
+        return toRow(rows.iterator().next());
+      });
+  }
+
+  @Override
+  public Completable update(long id, JsonObject item) {
+    IllegalArgumentException invalid = validateUpdate(id, item);
+    if (invalid != null) {
+      return Completable.error(invalid);
+    }
+
+    return pool.rxPreparedQuery(UPDATE, Tuple.of(item.getString("name"), item.getInteger("amount", 0), id))
+      .flatMapCompletable(rows -> updated(id, rows));
+  }
+
+  @Override
+  public Single<Long> update(long id, JsonObject item, long expectedVersion) {
+    IllegalArgumentException invalid = validateUpdate(id, item);
+    if (invalid != null) {
+      return Single.error(invalid);
+    }
+
+    return pool.rxPreparedQuery(UPDATE_VERSION,
+      Tuple.of(item.getString("name"), item.getInteger("amount", 0), id, expectedVersion))
+      .map(rows -> {
+        if (rows.rowCount() == 0) {
+          throw new ConcurrentModificationException("Item '" + id + "' is not at version " + expectedVersion);
+        }
+        return rows.iterator().next().getLong("version");
+      });
+  }
+
+  @Override
+  public Completable upsert(long id, JsonObject item) {
+    IllegalArgumentException invalid = validateUpdate(id, item);
+    if (invalid != null) {
+      return Completable.error(invalid);
+    }
+
+    return pool.rxPreparedQuery(UPSERT, Tuple.of(id, item.getString("name"), item.getInteger("amount", 0)))
+      .ignoreElement();
+  }
+
+  @Override
+  public Completable delete(long id) {
+    return pool.rxPreparedQuery(DELETE, Tuple.of(id))
+      .flatMapCompletable(rows -> updated(id, rows));
+  }
+
+  @Override
+  public Single<List<Integer>> updateAll(List<JsonObject> items) {
+    List<Tuple> batch = new ArrayList<>(items.size());
+    for (JsonObject item : items) {
+      if (item == null || !(item.getValue("id") instanceof Number)) {
+        return Single.error(new IllegalArgumentException("Every item must contain a numeric 'id'"));
+      }
+      long id = item.getLong("id");
+      IllegalArgumentException invalid = validateUpdate(id, item);
+      if (invalid != null) {
+        return Single.error(invalid);
+      }
+      batch.add(Tuple.of(item.getString("name"), item.getInteger("amount", 0), id));
+    }
+    return batchInTransaction(UPDATE, batch);
+  }
+
+  @Override
+  public Single<List<Integer>> deleteAll(List<Long> ids) {
+    List<Tuple> batch = new ArrayList<>(ids.size());
+    for (Long id : ids) {
+      if (id == null) {
+        return Single.error(new IllegalArgumentException("The ids must not be null"));
+      }
+      batch.add(Tuple.of(id));
+    }
+    return batchInTransaction(DELETE, batch);
+  }
+
+  private Single<List<Integer>> batchInTransaction(String sql, List<Tuple> batch) {
+    if (batch.isEmpty()) {
+      return Single.just(Collections.emptyList());
+    }
+    return inTransaction(tx -> tx.rxPreparedBatch(sql, batch))
+      .map(rows -> {
+        List<Integer> counts = new ArrayList<>(batch.size());
+        for (PgRowSet current = rows; current != null; current = current.next()) {
+          counts.add(current.rowCount());
+        }
+        return counts;
+      });
+  }
+
+  private <T> Single<T> inTransaction(Function<PgTransaction, Single<T>> work) {
+    return pool.rxBegin()
+      .flatMap(tx ->
+        work.apply(tx)
+          .flatMap(result -> tx.rxCommit().andThen(Single.just(result)))
+          .doOnError(err -> tx.rollback()));
+  }
+
+  private static Completable updated(long id, PgRowSet rows) {
+    if (rows.rowCount() == 0) {
+      return Completable.error(new NoSuchElementException("Unknown item '" + id + "'"));
+    }
+    return Completable.complete();
+  }
+
+  private static void writeItem(Buffer buffer, Row row) {
+    CompactJson.writeValue(buffer.appendBytes(ID_FIELD), row.getLong("id"));
+    CompactJson.writeValue(buffer.appendBytes(NAME_FIELD), row.getString("name"));
+    CompactJson.writeValue(buffer.appendBytes(AMOUNT_FIELD), row.getInteger("amount"));
+    buffer.appendByte((byte) '}');
+  }
+
+  private static JsonObject toItem(Row row) {
+    return new JsonObject()
+      .put("id", row.getLong("id"))
+      .put("name", row.getString("name"))
+      .put("amount", row.getInteger("amount"));
+  }
+
+  private static JsonObject toRow(Row row) {
+    return toItem(row).put("version", row.getLong("version"));
+  }
+}
@@ -1,9 +1,13 @@
 CREATE TABLE IF NOT EXISTS vegetables(
   id        SERIAL NOT NULL PRIMARY KEY,
   name      VARCHAR(40) NOT NULL,
-  amount    INT
+  amount    INT,
+  version   BIGINT NOT NULL DEFAULT 1
 );
 
+-- the tables created before the optimistic locking have no version
+ALTER TABLE vegetables ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 1;
+
 DELETE FROM vegetables;
 
 INSERT INTO vegetables (name, amount) values ('Carrots', 10);
@@ -0,0 +1,94 @@
+package io.vertx.openshift.postgresql;
+
+import io.reactivex.Completable;
+import io.reactivex.Flowable;
+import io.reactivex.Single;
+import io.vertx.core.json.JsonObject;
+import io.vertx.openshift.utils.DataStore;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a CRUD workload against a {@link DataStore} and reports the throughput and the latency distribution, so that
+ * different store implementations can be compared on the same database.
+ * <p>
+ * Every iteration creates an item, reads it, updates it and deletes it, keeping at most {@code concurrency}
+ * iterations in flight.
+ */
+class CrudWorkload {
+
+  private final DataStore store;
+  private final int iterations;
+  private final int concurrency;
+
+  /**
+   * @param store       the store to exercise
+   * @param iterations  the number of create/read/update/delete sequences
+   * @param concurrency the maximum number of sequences in flight
+   */
+  CrudWorkload(DataStore store, int iterations, int concurrency) {
+    if (iterations < 1 || concurrency < 1) {
+      throw new IllegalArgumentException("The iterations and the concurrency must be positive");
+    }
+    this.store = store;
+    this.iterations = iterations;
+    this.concurrency = concurrency;
+  }
+
+  /**
+   * @return the result, with the latencies of the individual operations in microseconds
+   */
+  Single<JsonObject> run() {
+    long[] latencies = new long[iterations * 4];
+    return Single.defer(() -> {
+      long start = System.nanoTime();
+      return Flowable.range(0, iterations)
+        .flatMapCompletable(i -> iteration(i, latencies), false, concurrency)
+        .andThen(Single.fromCallable(() -> result(System.nanoTime() - start, latencies)));
+    });
+  }
+
+  private Completable iteration(int i, long[] latencies) {
+    int offset = i * 4;
+    return timed(store.create(new JsonObject().put("name", "workload-" + i).put("amount", i)), latencies, offset)
+      .flatMap(created -> timed(store.read(created.getLong("id")), latencies, offset + 1))
+      .flatMapCompletable(item -> {
+        long id = item.getLong("id");
+        return timed(store.update(id, item.put("amount", i + 1)), latencies, offset + 2)
+          .andThen(timed(store.delete(id), latencies, offset + 3));
+      });
+  }
+
+  private static <T> Single<T> timed(Single<T> operation, long[] latencies, int index) {
+    return Single.defer(() -> {
+      long start = System.nanoTime();
+      return operation.doOnSuccess(res -> latencies[index] = System.nanoTime() - start);
+    });
+  }
+
+  private static Completable timed(Completable operation, long[] latencies, int index) {
+    return Completable.defer(() -> {
+      long start = System.nanoTime();
+      return operation.doOnComplete(() -> latencies[index] = System.nanoTime() - start);
+    });
+  }
+
+  private JsonObject result(long elapsed, long[] latencies) {
+    Arrays.sort(latencies);
+    return new JsonObject()
+      .put("iterations", iterations)
+      .put("concurrency", concurrency)
+      .put("operations", latencies.length)
+      .put("elapsedMs", TimeUnit.NANOSECONDS.toMillis(elapsed))
+      .put("operationsPerSecond", latencies.length * 1e9 / elapsed)
+      .put("p50Us", micros(latencies, 0.50))
+      .put("p99Us", micros(latencies, 0.99))
+      .put("maxUs", TimeUnit.NANOSECONDS.toMicros(latencies[latencies.length - 1]));
+  }
+
+  private static long micros(long[] sorted, double percentile) {
+    int index = (int) Math.ceil(percentile * sorted.length) - 1;
+    return TimeUnit.NANOSECONDS.toMicros(sorted[Math.max(index, 0)]);
+  }
+}
@@ -0,0 +1,66 @@
+package io.vertx.openshift.postgresql;
+
+import io.reactiverse.reactivex.pgclient.PgClient;
+import io.reactiverse.reactivex.pgclient.PgPool;
+import io.reactivex.Single;
+import io.vertx.core.json.JsonObject;
+import io.vertx.openshift.utils.ConnectionPool;
+import io.vertx.openshift.utils.DataStore;
+import io.vertx.openshift.utils.impl.JdbcVegetableStore;
+import io.vertx.openshift.utils.impl.PostgreSqlDialect;
+import io.vertx.reactivex.core.Vertx;
+import io.vertx.reactivex.ext.jdbc.JDBCClient;
+
+import java.sql.SQLException;
+
+/**
+ * Runs the same CRUD workload with the JDBC store and with the reactive client store, and prints both results.
+ * <p>
+ * It needs a local PostgreSQL database, e.g.:
+ * <pre>
+ * docker run --rm -p 5432:5432 -e POSTGRES_USER=vertx -e POSTGRES_PASSWORD=password -e POSTGRES_DB=testdb postgres:10
+ * </pre>
+ * The arguments are the number of iterations (default 10000), the concurrency (default 64) and the JDBC url
+ * (default {@code jdbc:postgresql://localhost:5432/testdb}).
+ */
+public class StoreComparison {
+
+  public static void main(String[] args) throws SQLException {
+    int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+    int concurrency = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+    JsonObject config = new JsonObject()
+      .put("jdbcUrl", args.length > 2 ? args[2] : "jdbc:postgresql://localhost:5432/testdb")
+      .put("driverClassName", "org.postgresql.Driver")
+      .put("principal", "vertx")
+      .put("credential", "password");
+
+    Vertx vertx = Vertx.vertx();
+    // the pool of the verticles, with a connection per sequence in flight
+    ConnectionPool connectionPool = ConnectionPool.create(config, "agroal", concurrency, concurrency, 30_000, 60_000);
+    JDBCClient jdbcClient = connectionPool.client(vertx);
+    PgPool pgPool = PgClient.pool(vertx, ReactivePgVegetableStore.poolOptions(config, 4, 256));
+
+    jdbcClient.rxQuery("CREATE TABLE IF NOT EXISTS vegetables(id SERIAL NOT NULL PRIMARY KEY, name VARCHAR(40) NOT NULL, amount INT, "
+      + "version BIGINT NOT NULL DEFAULT 1)")
+      .flatMap(created -> run("jdbc", new JdbcVegetableStore(jdbcClient, new PostgreSqlDialect()), iterations, concurrency))
+      .flatMap(jdbc -> run("reactive", new ReactivePgVegetableStore(pgPool), iterations, concurrency))
+      .doFinally(() -> {
+        // created outside of a verticle, nothing closes the clients with Vert.x
+        jdbcClient.close();
+        connectionPool.close();
+        pgPool.close();
+        vertx.close();
+      })
+      .subscribe(
+        res -> System.out.println("Done"),
+        Throwable::printStackTrace
+      );
+  }
+
+  private static Single<JsonObject> run(String name, DataStore store, int iterations, int concurrency) {
+    // a first run warms up the JIT and the connection pool
+    return new CrudWorkload(store, Math.min(iterations, 1000), concurrency).run()
+      .flatMap(warmup -> new CrudWorkload(store, iterations, concurrency).run())
+      .doOnSuccess(res -> System.out.println(name + ": " + res.encode()));
+  }
+}
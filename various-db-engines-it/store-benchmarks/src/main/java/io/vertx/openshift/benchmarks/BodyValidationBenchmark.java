@@ -0,0 +1,65 @@
+package io.vertx.openshift.benchmarks;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.openshift.mongodb.JsonBodies;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the validation of the bulk request bodies of the MongoDB verticle: {@link JsonBodies#arrayOfObjects}
+ * against the former validation, which decoded the body as a string twice and printed it. The results are written to
+ * {@code body-validation-1-threads.json}, apart from those of the store benchmarks:
+ * <pre>
+ * java -Dbenchmark.threads=1 -Dbenchmark.name=body-validation -jar target/benchmarks.jar BodyValidationBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BodyValidationBenchmark {
+
+  @Param({"10000"})
+  public int items;
+
+  @Param({"16", "256"})
+  public int payloadSize;
+
+  private Buffer body;
+
+  @Setup
+  public void setUp() {
+    JsonArray array = new JsonArray();
+    for (int i = 0; i < items; i++) {
+      array.add(Payloads.item(payloadSize));
+    }
+    body = array.toBuffer();
+  }
+
+  @Benchmark
+  public void singlePass(Blackhole blackhole) throws Exception {
+    blackhole.consume(JsonBodies.arrayOfObjects(body));
+  }
+
+  @Benchmark
+  public void former(Blackhole blackhole) {
+    // what RoutingContext.getBodyAsJsonArray does, the first array was encoded again to be printed
+    blackhole.consume(new JsonArray(body.toString()).toString());
+    blackhole.consume(new JsonArray(body.toString()));
+  }
+}
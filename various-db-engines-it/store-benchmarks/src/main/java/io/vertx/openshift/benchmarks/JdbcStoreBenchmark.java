@@ -0,0 +1,132 @@
+package io.vertx.openshift.benchmarks;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+import io.vertx.openshift.utils.DataStore;
+import io.vertx.openshift.utils.SqlDialect;
+import io.vertx.openshift.utils.impl.CachedStatementJdbcVegetableStore;
+import io.vertx.openshift.utils.impl.JdbcVegetableStore;
+import io.vertx.reactivex.core.Vertx;
+import io.vertx.reactivex.ext.jdbc.JDBCClient;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the JDBC stores against an in-memory H2 database.
+ * <p>
+ * Every benchmark runs in its own fork, so the rows inserted by {@link #create()} don't change what
+ * {@link #readAll()} returns. Run with {@code -prof gc} to compare the allocation rates of {@link #readAll()} and
+ * {@link #readAllJson()}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JdbcStoreBenchmark {
+
+  private static final int ROWS = 1000;
+
+  @Param({"16", "256", "4096"})
+  public int payloadSize;
+
+  @Param({"jdbc", "cachedStatements"})
+  public String store;
+
+  private Vertx vertx;
+  private DataStore dataStore;
+  private long[] ids;
+
+  @Setup
+  public void setUp() {
+    vertx = Vertx.vertx();
+    JDBCClient client = JDBCClient.createNonShared(vertx, new JsonObject()
+      .put("url", "jdbc:h2:mem:vegetables;DB_CLOSE_DELAY=-1")
+      .put("driver_class", "org.h2.Driver")
+      .put("max_pool_size", 32));
+    client.rxUpdate("DROP TABLE IF EXISTS vegetables")
+      .flatMap(dropped -> client.rxUpdate(
+        "CREATE TABLE vegetables(id BIGINT AUTO_INCREMENT PRIMARY KEY, name VARCHAR(8192) NOT NULL, amount INT, "
+          + "version BIGINT NOT NULL DEFAULT 1)"))
+      .blockingGet();
+
+    if ("cachedStatements".equals(store)) {
+      dataStore = new CachedStatementJdbcVegetableStore(vertx, client, SqlDialect.STANDARD, 8);
+    } else {
+      dataStore = new JdbcVegetableStore(client, SqlDialect.STANDARD);
+    }
+
+    ids = new long[ROWS];
+    for (int i = 0; i < ROWS; i++) {
+      ids[i] = dataStore.create(Payloads.item(payloadSize)).blockingGet().getLong("id");
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    vertx.close();
+  }
+
+  @Benchmark
+  public JsonObject create() {
+    return dataStore.create(Payloads.item(payloadSize)).blockingGet();
+  }
+
+  @Benchmark
+  public JsonObject read() {
+    return dataStore.read(randomId()).blockingGet();
+  }
+
+  @Benchmark
+  public void update() {
+    dataStore.update(randomId(), Payloads.item(payloadSize)).blockingAwait();
+  }
+
+  @Benchmark
+  public void delete(Created created) {
+    dataStore.delete(created.id).blockingAwait();
+  }
+
+  @Benchmark
+  public List<JsonObject> readAll() {
+    return dataStore.readAll().toList().blockingGet();
+  }
+
+  @Benchmark
+  public List<Buffer> readAllJson() {
+    return dataStore.readAllJson().toList().blockingGet();
+  }
+
+  private long randomId() {
+    return ids[ThreadLocalRandom.current().nextInt(ids.length)];
+  }
+
+  /**
+   * The row removed by {@link #delete(Created)}, inserted before each invocation.
+   */
+  @State(Scope.Thread)
+  public static class Created {
+    private long id;
+
+    @Setup(Level.Invocation)
+    public void create(JdbcStoreBenchmark benchmark) {
+      id = benchmark.create().getLong("id");
+    }
+  }
+}
@@ -0,0 +1,149 @@
+package io.vertx.openshift.benchmarks;
+
+import de.flapdoodle.embed.mongo.MongodExecutable;
+import de.flapdoodle.embed.mongo.MongodStarter;
+import de.flapdoodle.embed.mongo.config.MongodConfigBuilder;
+import de.flapdoodle.embed.mongo.config.Net;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import de.flapdoodle.embed.process.runtime.Network;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.mongo.MongoClient;
+import io.vertx.openshift.mongodb.models.MongoDBVegetableStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link MongoDBVegetableStore} against an embedded MongoDB server. The server binaries are downloaded
+ * on the first run and cached in {@code ~/.embedmongo}.
+ * <p>
+ * An existing server can be used instead with {@code -Dmongo.connection=mongodb://host:port}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MongoStoreBenchmark {
+
+  private static final int ROWS = 1000;
+
+  @Param({"16", "256", "4096"})
+  public int payloadSize;
+
+  private MongodExecutable mongod;
+  private Vertx vertx;
+  private MongoClient client;
+  private MongoDBVegetableStore store;
+  private String[] ids;
+
+  @Setup
+  public void setUp() throws IOException {
+    String connection = System.getProperty("mongo.connection");
+    if (connection == null) {
+      int port = Network.getFreeServerPort();
+      mongod = MongodStarter.getDefaultInstance().prepare(new MongodConfigBuilder()
+        .version(Version.Main.PRODUCTION)
+        .net(new Net("localhost", port, Network.localhostIsIPv6()))
+        .build());
+      mongod.start();
+      connection = "mongodb://localhost:" + port;
+    }
+
+    vertx = Vertx.vertx();
+    client = MongoClient.createNonShared(vertx, new JsonObject()
+      .put("connection_string", connection)
+      .put("db_name", "benchmarks"));
+    store = new MongoDBVegetableStore(client);
+
+    Future<Void> dropped = Future.future();
+    client.dropCollection(MongoDBVegetableStore.VEGETABLE_COLLECTION, dropped);
+    await(dropped);
+
+    ids = new String[ROWS];
+    for (int i = 0; i < ROWS; i++) {
+      ids[i] = create().getString("id");
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    client.close();
+    vertx.close();
+    if (mongod != null) {
+      mongod.stop();
+    }
+  }
+
+  @Benchmark
+  public JsonObject create() {
+    return await(store.insert(Payloads.item(payloadSize)));
+  }
+
+  @Benchmark
+  public JsonObject read() {
+    return await(store.read(randomId(), null));
+  }
+
+  @Benchmark
+  public JsonObject update() {
+    return await(store.update(randomId(), Payloads.item(payloadSize)));
+  }
+
+  @Benchmark
+  public JsonObject delete(Created created) {
+    return await(store.delete(created.id));
+  }
+
+  @Benchmark
+  public JsonObject readAll() {
+    return await(store.readAll(null));
+  }
+
+  private String randomId() {
+    return ids[ThreadLocalRandom.current().nextInt(ids.length)];
+  }
+
+  private static <T> T await(Future<T> future) {
+    CompletableFuture<T> result = new CompletableFuture<>();
+    future.setHandler(ar -> {
+      if (ar.succeeded()) {
+        result.complete(ar.result());
+      } else {
+        result.completeExceptionally(ar.cause());
+      }
+    });
+    return result.join();
+  }
+
+  /**
+   * The document removed by {@link #delete(Created)}, inserted before each invocation.
+   */
+  @State(Scope.Thread)
+  public static class Created {
+    private String id;
+
+    @Setup(Level.Invocation)
+    public void create(MongoStoreBenchmark benchmark) {
+      id = benchmark.create().getString("id");
+    }
+  }
+}
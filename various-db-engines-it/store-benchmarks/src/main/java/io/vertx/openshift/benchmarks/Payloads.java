@@ -0,0 +1,25 @@
+package io.vertx.openshift.benchmarks;
+
+import io.vertx.core.json.JsonObject;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Builds the items sent to the stores, the payload size being the length of their name.
+ */
+final class Payloads {
+
+  private Payloads() {
+  }
+
+  static JsonObject item(int payloadSize) {
+    char[] name = new char[payloadSize];
+    Arrays.fill(name, 'a');
+    // vary the first character so that the rows are not all identical
+    name[0] = (char) ('a' + ThreadLocalRandom.current().nextInt(26));
+    return new JsonObject()
+      .put("name", new String(name))
+      .put("amount", ThreadLocalRandom.current().nextInt(1000));
+  }
+}
@@ -0,0 +1,43 @@
+package io.vertx.openshift.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+
+/**
+ * Runs the store benchmarks once per concurrency level and writes the results of each run as JSON.
+ * <p>
+ * The concurrency levels are given by {@code -Dbenchmark.threads} (default {@code 1,4,16}) and the results are
+ * written to the {@code -Dbenchmark.output} directory (default {@code target/jmh}), one
+ * {@code <name>-<threads>-threads.json} file per level, where the name is given by {@code -Dbenchmark.name} (default
+ * {@code store-benchmarks}). The system properties go before {@code -jar}, the arguments are regular JMH options, e.g.
+ * a regex selecting the benchmarks to run:
+ * <pre>
+ * java -Dbenchmark.threads=4 -jar target/benchmarks.jar JdbcStoreBenchmark -p payloadSize=256
+ * </pre>
+ */
+public class StoreBenchmarks {
+
+  public static void main(String[] args) throws Exception {
+    CommandLineOptions cli = new CommandLineOptions(args);
+    File output = new File(System.getProperty("benchmark.output", "target/jmh"));
+    String name = System.getProperty("benchmark.name", "store-benchmarks");
+    if (!output.isDirectory() && !output.mkdirs()) {
+      throw new IllegalStateException("Cannot create " + output);
+    }
+
+    for (String level : System.getProperty("benchmark.threads", "1,4,16").split(",")) {
+      int threads = Integer.parseInt(level.trim());
+      new Runner(new OptionsBuilder()
+        .parent(cli)
+        .threads(threads)
+        .resultFormat(ResultFormatType.JSON)
+        .result(new File(output, name + "-" + threads + "-threads.json").getPath())
+        .build())
+        .run();
+    }
+  }
+}
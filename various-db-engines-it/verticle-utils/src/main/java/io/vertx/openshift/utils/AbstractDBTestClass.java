@@ -59,6 +59,29 @@ public class AbstractDBTestClass extends AbstractTestClass {
     );
   }
 
+  @Test
+  public void pageTest() {
+    System.out.println("Starting page test");
+    String vegetableName = "Radish";
+    int first = createItem(vegetableName).getBody().jsonPath().getInt("id");
+    int second = createItem(vegetableName).getBody().jsonPath().getInt("id");
+
+    ensureThat("we can get the first page of the filtered vegetables", () -> get(API_LIST_ROUTE + "page?limit=1&name=" + vegetableName)
+      .then().assertThat().body("items[0].id", equalTo(first)).and().body("next", equalTo(first))
+    );
+
+    ensureThat("we can get the following page", () -> get(API_LIST_ROUTE + "page?limit=1&name=" + vegetableName + "&after=" + first)
+      .then().assertThat().body("items[0].id", equalTo(second))
+    );
+
+    ensureThat("the page after the last item is empty", () -> get(API_LIST_ROUTE + "page?name=" + vegetableName + "&after=" + second)
+      .then().assertThat().body("items.size()", equalTo(0)).and().body("next", equalTo(null))
+    );
+
+    delete(API_LIST_ROUTE + first);
+    delete(API_LIST_ROUTE + second);
+  }
+
   public Response createItem(String name) {
     return setRequestJSONBody(new JSONObject().put("name", name)).post(API_LIST_ROUTE);
   }
@@ -1,20 +1,27 @@
 package io.vertx.openshift.utils;
 
 import io.reactivex.Completable;
-import io.reactivex.Observable;
 import io.reactivex.Single;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
+import io.vertx.openshift.utils.impl.CachedStatementJdbcVegetableStore;
 import io.vertx.openshift.utils.impl.JdbcVegetableStore;
 import io.vertx.reactivex.core.AbstractVerticle;
 import io.vertx.reactivex.core.Vertx;
+import io.vertx.reactivex.core.buffer.Buffer;
+import io.vertx.reactivex.core.eventbus.MessageConsumer;
 import io.vertx.reactivex.core.http.HttpServer;
 import io.vertx.reactivex.core.http.HttpServerResponse;
 import io.vertx.reactivex.ext.jdbc.JDBCClient;
 import io.vertx.reactivex.ext.web.Router;
 import io.vertx.reactivex.ext.web.RoutingContext;
 
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static io.vertx.openshift.utils.Errors.error;
 
@@ -22,25 +29,163 @@ import static io.vertx.openshift.utils.Errors.error;
  * @author Martin Spisiak (mspisiak@redhat.com) on 03/10/17.
  */
 public abstract class AbstractDatabaseVerticle extends AbstractVerticle {
+  protected static final int DEFAULT_PAGE_SIZE = 20;
+  protected static final int MAX_PAGE_SIZE = 1000;
+  protected static final int DEFAULT_STATS_TOP = 5;
+  protected static final int MAX_STATS_TOP = 100;
+  /**
+   * The event bus address the change events of the items are published on.
+   */
+  public static final String CHANGE_FEED_ADDRESS = "vegetables.changes";
+  /**
+   * Time, in milliseconds, between the comments keeping an idle change stream open.
+   */
+  protected static final long CHANGE_FEED_KEEP_ALIVE = 15000;
+
   protected boolean isExternalDB = Boolean.valueOf(System.getenv().getOrDefault("externalDb", "true"));
+  /**
+   * Number of connections kept checked out with cached prepared statements, 0 disables the statement cache.
+   */
+  protected int statementCacheConnections = Integer.valueOf(System.getenv().getOrDefault("statementCacheConnections", "0"));
+  /**
+   * Maximum number of concurrent creates inserted together, 0 or 1 disables the batching.
+   */
+  protected int createBatchSize = Integer.valueOf(System.getenv().getOrDefault("createBatchSize", "0"));
+  /**
+   * Maximum time, in milliseconds, a create waits for others to be batched with.
+   */
+  protected long createBatchDelay = Long.valueOf(System.getenv().getOrDefault("createBatchDelay", "5"));
+  /**
+   * Maximum number of items kept in the read cache, 0 disables the cache.
+   */
+  protected int readCacheSize = Integer.valueOf(System.getenv().getOrDefault("readCacheSize", "0"));
+  /**
+   * Time, in milliseconds, an item is served from the read cache.
+   */
+  protected long readCacheTtl = Long.valueOf(System.getenv().getOrDefault("readCacheTtl", "30000"));
+  /**
+   * JDBC connection pool implementation, one of {@code agroal}, {@code hikari} or {@code c3p0}.
+   */
+  protected String poolProvider = System.getenv().getOrDefault("poolProvider", "agroal");
+  protected int poolMaxSize = Integer.valueOf(System.getenv().getOrDefault("poolMaxSize", "20"));
+  protected int poolMinSize = Integer.valueOf(System.getenv().getOrDefault("poolMinSize", "0"));
+  /**
+   * Time, in milliseconds, to wait for a pooled connection before failing.
+   */
+  protected long poolAcquisitionTimeout = Long.valueOf(System.getenv().getOrDefault("poolAcquisitionTimeout", "5000"));
+  /**
+   * Time, in milliseconds, after which an idle pooled connection is closed.
+   */
+  protected long poolIdleTimeout = Long.valueOf(System.getenv().getOrDefault("poolIdleTimeout", "300000"));
+  /**
+   * Maximum number of independent DDL statement groups of {@code db_init.sql} run at the same time.
+   */
+  protected int initConcurrency = Integer.valueOf(System.getenv().getOrDefault("initConcurrency", "4"));
+  /**
+   * Maximum number of DML statements of {@code db_init.sql} sent in a JDBC batch.
+   */
+  protected int initBatchSize = Integer.valueOf(System.getenv().getOrDefault("initBatchSize", "500"));
+  /**
+   * How often, in milliseconds, the in-memory vegetable statistics are rebuilt from the database. They keep an entry
+   * per item and each rebuild reads the whole table, so they are disabled by default, with 0, and each statistics
+   * request is then computed by the database.
+   */
+  protected long statsReconcileInterval = Long.valueOf(System.getenv().getOrDefault("statsReconcileInterval", "0"));
+  /**
+   * Whether a PUT without {@code If-Match} creates the item when it doesn't exist. The id sequence of the database
+   * is then moved past the given id, so that the items created later don't collide with it.
+   */
+  protected boolean upsertOnPut = Boolean.valueOf(System.getenv().getOrDefault("upsertOnPut", "false"));
+  /**
+   * Number of change events kept for the consumers resuming the change feed, 0 disables the change feed.
+   */
+  protected int changeFeedBacklog = Integer.valueOf(System.getenv().getOrDefault("changeFeedBacklog", "1000"));
+  protected ConnectionPool pool;
+  /**
+   * The dialect of the database, chosen from its JDBC URL by {@link #createJdbcClient(JsonObject)}.
+   */
+  protected SqlDialect dialect = SqlDialect.STANDARD;
+  /**
+   * The timings of the database initialization, {@code null} until it is complete.
+   */
+  protected JsonObject initReport;
   protected DataStore store;
+  /**
+   * The store publishing the change events, {@code null} when the change feed is disabled.
+   */
+  protected ChangeFeedDataStore changeFeed;
+
+  /**
+   * Creates the JDBC client on an instrumented connection pool configured by the {@code pool*} settings.
+   *
+   * @param config the connection configuration returned by {@link TestUtils#allocateDatabase(String, boolean)}
+   */
+  protected JDBCClient createJdbcClient(JsonObject config) throws SQLException {
+    dialect = SqlDialect.forJdbcUrl(config.getString("jdbcUrl"));
+    pool = ConnectionPool.create(config, poolProvider, poolMaxSize, poolMinSize, poolAcquisitionTimeout,
+      poolIdleTimeout);
+    return pool.client(vertx);
+  }
+
+  @Override
+  public void stop() throws Exception {
+    if (store != null) {
+      store.close();
+    }
+    if (pool != null) {
+      pool.close();
+    }
+  }
 
+  /**
+   * Runs {@code db_init.sql} with a {@link SqlScriptRunner}, its report is then published with the metrics.
+   */
   protected Completable initDatabase(Vertx vertx, JDBCClient jdbc) {
-    return jdbc.rxGetConnection()
-      .flatMapCompletable(connection ->
-        vertx.fileSystem().rxReadFile("db_init.sql")
-          .flatMapObservable(buffer -> Observable.fromArray(buffer.toString().replaceAll(";.*$", "").split(";")))
-          .flatMapCompletable(connection::rxExecute)
-          .doAfterTerminate(connection::close)
-      );
+    return vertx.fileSystem().rxReadFile("db_init.sql")
+      .flatMap(buffer -> new SqlScriptRunner(jdbc, initConcurrency, initBatchSize).run(buffer.toString()))
+      .doOnSuccess(report -> {
+        initReport = report;
+        System.out.println("Database initialized in " + report.getLong("elapsedMs") + " ms: " + report.encode());
+      })
+      .ignoreElement();
   }
 
+  /**
+   * Creates the store and starts the server once subscribed, so that the store doesn't read the database before the
+   * initialization chained before it.
+   */
   protected Single<HttpServer> initHttpServer(Router router, JDBCClient client) {
-    this.store = new JdbcVegetableStore(client);
-    return vertx
-      .createHttpServer()
-      .requestHandler(router::accept)
-      .rxListen(8080);
+    return Single.defer(() -> {
+      this.store = decorateStore(createStore(client));
+      return vertx
+        .createHttpServer()
+        .requestHandler(router::accept)
+        .rxListen(8080);
+    });
+  }
+
+  protected DataStore createStore(JDBCClient client) {
+    if (statementCacheConnections > 0) {
+      return new CachedStatementJdbcVegetableStore(vertx, client, dialect, statementCacheConnections);
+    }
+    return new JdbcVegetableStore(client, dialect);
+  }
+
+  protected DataStore decorateStore(DataStore store) {
+    // innermost, so that the batched creates are seen with their ids
+    if (statsReconcileInterval > 0) {
+      store = new StatsDataStore(vertx, store, statsReconcileInterval);
+    }
+    if (changeFeedBacklog > 0) {
+      store = changeFeed = new ChangeFeedDataStore(vertx, store, CHANGE_FEED_ADDRESS, changeFeedBacklog);
+    }
+    if (createBatchSize > 1) {
+      store = new BatchingDataStore(vertx, store, createBatchSize, createBatchDelay);
+    }
+    if (readCacheSize > 0) {
+      store = new CachingDataStore(store, readCacheSize, readCacheTtl);
+    }
+    return store;
   }
 
   protected void validateId(RoutingContext ctx) {
@@ -53,25 +198,200 @@ public abstract class AbstractDatabaseVerticle extends AbstractVerticle {
     }
   }
 
+  /**
+   * Streams the items as a chunked JSON array. Rows are only fetched from the store when the response write queue
+   * has room for them, so the memory used doesn't depend on the number of items.
+   */
   protected void getAll(RoutingContext ctx) {
     HttpServerResponse response = ctx.response()
-      .putHeader("Content-Type", "application/json");
-    JsonArray res = new JsonArray();
-    store.readAll()
+      .putHeader("Content-Type", "application/json")
+      .setChunked(true);
+    // nothing is written before the first chunk, so an early failure can still be reported with a proper status
+    AtomicBoolean written = new AtomicBoolean();
+    store.readAllJson()
+      .map(chunk -> {
+        written.set(true);
+        return Buffer.newInstance(chunk);
+      })
+      .subscribe(response.toSubscriber()
+        .onError(err -> {
+          if (written.get()) {
+            response.close();
+          } else {
+            error(ctx, 415, err);
+          }
+        }));
+  }
+
+  /**
+   * Returns a page of items, optionally filtered by {@code name}, {@code minAmount} and {@code maxAmount}. The page
+   * starts after the item whose id is given by the {@code after} query parameter, {@code next} in the response is
+   * the value to pass to get the following page, it is {@code null} on the last page.
+   */
+  protected void getPage(RoutingContext ctx) {
+    long after;
+    int limit;
+    JsonObject filter = new JsonObject();
+    try {
+      after = Long.parseLong(queryParam(ctx, "after", "0"));
+      limit = Integer.parseInt(queryParam(ctx, "limit", String.valueOf(DEFAULT_PAGE_SIZE)));
+      String name = ctx.request().getParam("name");
+      if (name != null) {
+        filter.put("name", name);
+      }
+      String minAmount = ctx.request().getParam("minAmount");
+      if (minAmount != null) {
+        filter.put("minAmount", Integer.parseInt(minAmount));
+      }
+      String maxAmount = ctx.request().getParam("maxAmount");
+      if (maxAmount != null) {
+        filter.put("maxAmount", Integer.parseInt(maxAmount));
+      }
+    } catch (NumberFormatException e) {
+      error(ctx, 400, "invalid page parameter: " + e.getMessage());
+      return;
+    }
+    if (limit < 1 || limit > MAX_PAGE_SIZE) {
+      error(ctx, 400, "invalid limit: must be between 1 and " + MAX_PAGE_SIZE);
+      return;
+    }
+
+    store.readPage(after, limit, filter)
+      .toList()
       .subscribe(
-        res::add,
-        err -> error(ctx, 415, err),
-        () -> response.end(res.encodePrettily())
+        items -> {
+          Long next = items.size() == limit ? items.get(items.size() - 1).getLong("id") : null;
+          ctx.response()
+            .putHeader("Content-Type", "application/json")
+            .end(new JsonObject()
+              .put("items", new JsonArray(items))
+              .put("next", next)
+              .encodePrettily());
+        },
+        err -> error(ctx, 500, err)
       );
   }
 
+  /**
+   * Returns the count, the total, min and max amount of the items, and the {@code top} names (default
+   * {@value #DEFAULT_STATS_TOP}) holding the largest total amount.
+   */
+  protected void getStats(RoutingContext ctx) {
+    int top;
+    try {
+      top = Integer.parseInt(queryParam(ctx, "top", String.valueOf(DEFAULT_STATS_TOP)));
+    } catch (NumberFormatException e) {
+      error(ctx, 400, "invalid top: " + e.getMessage());
+      return;
+    }
+    if (top < 0 || top > MAX_STATS_TOP) {
+      error(ctx, 400, "invalid top: must be between 0 and " + MAX_STATS_TOP);
+      return;
+    }
+
+    store.stats(top)
+      .subscribe(
+        stats -> ctx.response()
+          .putHeader("Content-Type", "application/json")
+          .end(stats.encodePrettily()),
+        err -> error(ctx, 500, err)
+      );
+  }
+
+  /**
+   * Streams the change events of the items as server-sent events, from the time of the request or, to resume a
+   * stream, from the event following the one given by the {@code Last-Event-ID} header or the {@code since} query
+   * parameter. 410 is returned when the events to resume from are no longer kept, the items must then be read again.
+   * <p>
+   * A consumer too slow to keep up is disconnected, and can resume.
+   */
+  protected void getChanges(RoutingContext ctx) {
+    if (changeFeed == null) {
+      error(ctx, 404, "the change feed is disabled");
+      return;
+    }
+    String since = ctx.request().getHeader("Last-Event-ID");
+    if (since == null) {
+      since = ctx.request().getParam("since");
+    }
+    Long after = null;
+    if (since != null) {
+      try {
+        after = Long.parseLong(since.trim());
+      } catch (NumberFormatException e) {
+        error(ctx, 400, "invalid since: " + e.getMessage());
+        return;
+      }
+    }
+
+    HttpServerResponse response = ctx.response()
+      .putHeader("Content-Type", "text/event-stream")
+      .putHeader("Cache-Control", "no-cache")
+      .setChunked(true);
+    // the missed events are all written, the slow consumers are only dropped once they are replayed
+    AtomicBoolean replayed = new AtomicBoolean();
+    MessageConsumer<JsonObject> consumer = changeFeed.subscribe(after, event -> {
+      if (replayed.get() && response.writeQueueFull()) {
+        response.close();
+        return;
+      }
+      writeChange(response, event);
+    });
+    if (consumer == null) {
+      error(ctx, 410, "the changes since " + since + " are no longer available");
+      return;
+    }
+    replayed.set(true);
+    long keepAlive = vertx.setPeriodic(CHANGE_FEED_KEEP_ALIVE, timer -> response.write(":\n\n"));
+    response.closeHandler(closed -> {
+      vertx.cancelTimer(keepAlive);
+      consumer.unregister();
+    });
+    response.write(":\n\n");
+  }
+
+  private static void writeChange(HttpServerResponse response, JsonObject event) {
+    response.write("id: " + event.getLong("seq") + "\nevent: " + event.getString("op") + "\ndata: " + event.encode()
+      + "\n\n");
+  }
+
+  private static String queryParam(RoutingContext ctx, String name, String defaultValue) {
+    String value = ctx.request().getParam(name);
+    return value == null ? defaultValue : value;
+  }
+
+  /**
+   * @return the metrics of the store, of the connection pool and of the database initialization
+   */
+  protected JsonObject metrics() {
+    JsonObject metrics = store.metrics().copy();
+    if (pool != null) {
+      metrics.put("connectionPool", pool.metrics());
+    }
+    if (initReport != null) {
+      metrics.put("initDatabase", initReport);
+    }
+    return metrics;
+  }
+
+  protected void getMetrics(RoutingContext ctx) {
+    ctx.response()
+      .putHeader("Content-Type", "application/json")
+      .end(metrics().encodePrettily());
+  }
+
   protected void getOne(RoutingContext ctx) {
     HttpServerResponse response = ctx.response()
       .putHeader("Content-Type", "application/json");
 
     store.read(ctx.get("id"))
       .subscribe(
-        json -> response.end(json.encodePrettily()),
+        json -> {
+          if (json.getValue("version") != null) {
+            response.putHeader("ETag", etag(json.getLong("version")));
+          }
+          response.end(json.encodePrettily());
+        },
         err -> {
           if (err instanceof NoSuchElementException) {
             error(ctx, 404, err);
@@ -101,16 +421,25 @@ public abstract class AbstractDatabaseVerticle extends AbstractVerticle {
     store.create(item)
       .subscribe(
         json ->
-          ctx.response()
-            .putHeader("Location", "/api/ve" +
-              "" + json.getLong("id"))
+        {
+          HttpServerResponse response = ctx.response()
+            .putHeader("Location", "/api/vegetables/" + json.getValue("id"))
             .putHeader("Content-Type", "application/json")
-            .setStatusCode(201)
-            .end(json.encodePrettily()),
+            .setStatusCode(201);
+          if (json.getValue("version") != null) {
+            response.putHeader("ETag", etag(json.getLong("version")));
+          }
+          response.end(json.encodePrettily());
+        },
         err -> writeError(ctx, err)
       );
   }
 
+  /**
+   * Replaces the item. With an {@code If-Match} header holding the ETag returned by {@link #getOne(RoutingContext)},
+   * the item is only replaced if it hasn't changed since, 412 is returned otherwise. Without it, the item is replaced
+   * whatever its version, and created if it doesn't exist when {@code upsertOnPut} is set.
+   */
   protected void updateOne(RoutingContext ctx) {
     JsonObject item;
     try {
@@ -125,22 +454,172 @@ public abstract class AbstractDatabaseVerticle extends AbstractVerticle {
       return;
     }
 
-    store.update(ctx.get("id"), item)
+    long id = ctx.get("id");
+    // the version is set by the store, not by the client
+    item.remove("version");
+    String ifMatch = ctx.request().getHeader("If-Match");
+    if (ifMatch != null && !"*".equals(ifMatch.trim())) {
+      Long expectedVersion = version(ifMatch);
+      if (expectedVersion == null) {
+        error(ctx, 400, "invalid If-Match: " + ifMatch);
+        return;
+      }
+      store.update(id, item, expectedVersion)
+        .subscribe(
+          version ->
+            ctx.response()
+              .putHeader("Content-Type", "application/json")
+              .putHeader("ETag", etag(version))
+              .setStatusCode(200)
+              .end(item.put("id", id).put("version", version).encodePrettily()),
+          err -> writeError(ctx, err)
+        );
+      return;
+    }
+
+    Completable write = ifMatch == null && upsertOnPut ? store.upsert(id, item) : store.update(id, item);
+    write
       .subscribe(
         () ->
           ctx.response()
             .putHeader("Content-Type", "application/json")
             .setStatusCode(200)
-            .end(item.put("id", ctx.<Long>get("id")).encodePrettily()),
+            .end(item.put("id", id).encodePrettily()),
         err -> writeError(ctx, err)
       );
   }
 
+  private static String etag(long version) {
+    return "\"" + version + "\"";
+  }
+
+  /**
+   * @return the version held by the {@code etag} returned by {@link #etag(long)}, {@code null} if it is not such a tag
+   */
+  private static Long version(String etag) {
+    String tag = etag.trim();
+    if (tag.length() < 3 || tag.charAt(0) != '"' || tag.charAt(tag.length() - 1) != '"') {
+      return null;
+    }
+    try {
+      return Long.parseLong(tag.substring(1, tag.length() - 1));
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Creates all the items of the JSON array payload at once, and returns them with their ids.
+   */
+  protected void addMany(RoutingContext ctx) {
+    List<JsonObject> items = jsonObjectsBody(ctx);
+    if (items == null) {
+      return;
+    }
+
+    store.createAll(items)
+      .subscribe(
+        created ->
+          ctx.response()
+            .putHeader("Content-Type", "application/json")
+            .setStatusCode(201)
+            .end(new JsonArray(created).encodePrettily()),
+        err -> writeError(ctx, err)
+      );
+  }
+
+  /**
+   * Updates all the items of the JSON array payload at once, each item must contain its {@code id}. The response
+   * tells, for each item, whether it has been updated.
+   */
+  protected void updateMany(RoutingContext ctx) {
+    List<JsonObject> list = jsonObjectsBody(ctx);
+    if (list == null) {
+      return;
+    }
+
+    store.updateAll(list)
+      .subscribe(
+        counts -> {
+          JsonArray result = new JsonArray();
+          for (int i = 0; i < list.size(); i++) {
+            result.add(new JsonObject().put("id", list.get(i).getLong("id")).put("updated", counts.get(i) != 0));
+          }
+          ctx.response()
+            .putHeader("Content-Type", "application/json")
+            .setStatusCode(200)
+            .end(result.encodePrettily());
+        },
+        err -> writeError(ctx, err)
+      );
+  }
+
+  /**
+   * Deletes all the items whose ids are given by the {@code ids} array of the payload. The response tells, for each
+   * id, whether the item has been deleted.
+   */
+  protected void deleteMany(RoutingContext ctx) {
+    List<Long> ids = new ArrayList<>();
+    try {
+      JsonObject body = ctx.getBodyAsJson();
+      JsonArray array = body == null ? null : body.getJsonArray("ids");
+      if (array == null) {
+        error(ctx, 415, "invalid payload");
+        return;
+      }
+      for (int i = 0; i < array.size(); i++) {
+        ids.add(array.getLong(i));
+      }
+    } catch (RuntimeException e) {
+      error(ctx, 415, "invalid payload");
+      return;
+    }
+
+    store.deleteAll(ids)
+      .subscribe(
+        counts -> {
+          JsonArray result = new JsonArray();
+          for (int i = 0; i < ids.size(); i++) {
+            result.add(new JsonObject().put("id", ids.get(i)).put("deleted", counts.get(i) != 0));
+          }
+          ctx.response()
+            .putHeader("Content-Type", "application/json")
+            .setStatusCode(200)
+            .end(result.encodePrettily());
+        },
+        err -> writeError(ctx, err)
+      );
+  }
+
+  /**
+   * @return the objects of the JSON array payload, {@code null} if the payload is invalid, the error has then been sent
+   */
+  private static List<JsonObject> jsonObjectsBody(RoutingContext ctx) {
+    try {
+      JsonArray array = ctx.getBodyAsJsonArray();
+      if (array != null) {
+        List<JsonObject> list = new ArrayList<>(array.size());
+        for (int i = 0; i < array.size(); i++) {
+          list.add(array.getJsonObject(i));
+        }
+        return list;
+      }
+    } catch (RuntimeException e) {
+      // reported below
+    }
+    error(ctx, 415, "invalid payload");
+    return null;
+  }
+
   protected void writeError(RoutingContext ctx, Throwable err) {
     if (err instanceof NoSuchElementException) {
       error(ctx, 404, err);
     } else if (err instanceof IllegalArgumentException) {
       error(ctx, 422, err);
+    } else if (err instanceof ConcurrentModificationException) {
+      error(ctx, 412, err);
+    } else if (err instanceof UnsupportedOperationException) {
+      error(ctx, 501, err);
     } else {
       error(ctx, 409, err);
     }
@@ -0,0 +1,198 @@
+package io.vertx.openshift.utils;
+
+import io.reactivex.Completable;
+import io.reactivex.Flowable;
+import io.reactivex.Single;
+import io.reactivex.SingleEmitter;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+import io.vertx.reactivex.core.Vertx;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link DataStore} decorator which gathers the items created within a small time window (or until the batch is
+ * full) and inserts them with a single {@link DataStore#createAll(List)} call. Every caller still gets its own item
+ * back, with its generated id.
+ * <p>
+ * If a batch fails, its items are retried one by one so that an invalid item only fails its own caller.
+ * All other operations go straight to the delegate.
+ */
+public class BatchingDataStore implements DataStore {
+
+  private final Vertx vertx;
+  private final DataStore delegate;
+  private final int maxBatchSize;
+  private final long maxDelay;
+
+  private List<Pending> pending = new ArrayList<>();
+  private long timer = -1;
+
+  private long batches;
+  private long batchedItems;
+  private long fallbacks;
+
+  /**
+   * @param vertx        the Vert.x instance used to schedule the flushes
+   * @param delegate     the store executing the operations
+   * @param maxBatchSize the number of items triggering an immediate flush
+   * @param maxDelay     how long, in milliseconds, the first item of a batch may wait for other items
+   */
+  public BatchingDataStore(Vertx vertx, DataStore delegate, int maxBatchSize, long maxDelay) {
+    if (maxBatchSize < 1) {
+      throw new IllegalArgumentException("The batch size must be positive");
+    }
+    if (maxDelay < 1) {
+      throw new IllegalArgumentException("The batch delay must be positive");
+    }
+    this.vertx = vertx;
+    this.delegate = delegate;
+    this.maxBatchSize = maxBatchSize;
+    this.maxDelay = maxDelay;
+  }
+
+  @Override
+  public Single<JsonObject> create(JsonObject item) {
+    return Single.create(emitter -> enqueue(new Pending(item, emitter)));
+  }
+
+  @Override
+  public Single<List<JsonObject>> createAll(List<JsonObject> items) {
+    return delegate.createAll(items);
+  }
+
+  @Override
+  public Flowable<JsonObject> readAll() {
+    return delegate.readAll();
+  }
+
+  @Override
+  public Flowable<Buffer> readAllJson() {
+    return delegate.readAllJson();
+  }
+
+  @Override
+  public Flowable<JsonObject> readPage(long afterId, int limit, JsonObject filter) {
+    return delegate.readPage(afterId, limit, filter);
+  }
+
+  @Override
+  public Single<JsonObject> read(long id) {
+    return delegate.read(id);
+  }
+
+  @Override
+  public Completable update(long id, JsonObject item) {
+    return delegate.update(id, item);
+  }
+
+  @Override
+  public Single<Long> update(long id, JsonObject item, long expectedVersion) {
+    return delegate.update(id, item, expectedVersion);
+  }
+
+  @Override
+  public Completable upsert(long id, JsonObject item) {
+    return delegate.upsert(id, item);
+  }
+
+  @Override
+  public Completable delete(long id) {
+    return delegate.delete(id);
+  }
+
+  @Override
+  public Single<List<Integer>> updateAll(List<JsonObject> items) {
+    return delegate.updateAll(items);
+  }
+
+  @Override
+  public Single<List<Integer>> deleteAll(List<Long> ids) {
+    return delegate.deleteAll(ids);
+  }
+
+  @Override
+  public Single<JsonObject> stats(int top) {
+    return delegate.stats(top);
+  }
+
+  @Override
+  public synchronized JsonObject metrics() {
+    return delegate.metrics().copy().put("createBatching", new JsonObject()
+      .put("batches", batches)
+      .put("items", batchedItems)
+      .put("averageBatchSize", batches == 0 ? 0.0 : (double) batchedItems / batches)
+      .put("fallbacks", fallbacks)
+      .put("pending", pending.size()));
+  }
+
+  private void enqueue(Pending item) {
+    boolean full;
+    synchronized (this) {
+      pending.add(item);
+      full = pending.size() >= maxBatchSize;
+      if (!full && timer == -1) {
+        timer = vertx.setTimer(maxDelay, id -> flush());
+      }
+    }
+    if (full) {
+      flush();
+    }
+  }
+
+  private void flush() {
+    List<Pending> batch;
+    synchronized (this) {
+      if (timer != -1) {
+        vertx.cancelTimer(timer);
+        timer = -1;
+      }
+      if (pending.isEmpty()) {
+        return;
+      }
+      batch = pending;
+      pending = new ArrayList<>();
+      batches++;
+      batchedItems += batch.size();
+    }
+
+    List<JsonObject> items = new ArrayList<>(batch.size());
+    for (Pending p : batch) {
+      items.add(p.item);
+    }
+    delegate.createAll(items).subscribe(
+      created -> {
+        for (int i = 0; i < batch.size(); i++) {
+          batch.get(i).emitter.onSuccess(created.get(i));
+        }
+      },
+      err -> {
+        if (batch.size() == 1) {
+          batch.get(0).emitter.onError(err);
+          return;
+        }
+        synchronized (this) {
+          fallbacks++;
+        }
+        for (Pending p : batch) {
+          delegate.create(p.item).subscribe(p.emitter::onSuccess, p.emitter::onError);
+        }
+      });
+  }
+
+  private static class Pending {
+    private final JsonObject item;
+    private final SingleEmitter<JsonObject> emitter;
+
+    private Pending(JsonObject item, SingleEmitter<JsonObject> emitter) {
+      this.item = item;
+      this.emitter = emitter;
+    }
+  }
+
+  @Override
+  public void close() {
+    delegate.close();
+  }
+}
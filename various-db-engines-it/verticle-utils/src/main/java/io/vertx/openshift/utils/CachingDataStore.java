@@ -0,0 +1,151 @@
+package io.vertx.openshift.utils;
+
+import io.reactivex.Completable;
+import io.reactivex.Flowable;
+import io.reactivex.Single;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link DataStore} decorator serving {@link #read(long)} from a bounded LRU cache, loading the missing items from
+ * the delegate. Updated and deleted items are invalidated.
+ * <p>
+ * A read racing with a write must not put back the value the write just invalidated: every invalidation bumps a
+ * version, and a loaded item is only cached if no invalidation happened while it was being read.
+ */
+public class CachingDataStore implements DataStore {
+
+  private final DataStore delegate;
+  private final LongLruCache<JsonObject> cache;
+  private final AtomicLong version = new AtomicLong();
+
+  /**
+   * @param delegate the store holding the items
+   * @param size     the maximum number of cached items
+   * @param ttl      how long an item is served from the cache, in milliseconds
+   */
+  public CachingDataStore(DataStore delegate, int size, long ttl) {
+    this.delegate = delegate;
+    this.cache = new LongLruCache<>(size, ttl);
+  }
+
+  @Override
+  public Single<JsonObject> create(JsonObject item) {
+    return delegate.create(item);
+  }
+
+  @Override
+  public Single<List<JsonObject>> createAll(List<JsonObject> items) {
+    return delegate.createAll(items);
+  }
+
+  @Override
+  public Flowable<JsonObject> readAll() {
+    return delegate.readAll();
+  }
+
+  @Override
+  public Flowable<Buffer> readAllJson() {
+    return delegate.readAllJson();
+  }
+
+  @Override
+  public Flowable<JsonObject> readPage(long afterId, int limit, JsonObject filter) {
+    return delegate.readPage(afterId, limit, filter);
+  }
+
+  @Override
+  public Single<JsonObject> read(long id) {
+    return Single.defer(() -> {
+      JsonObject cached = cache.get(id);
+      if (cached != null) {
+        return Single.just(cached.copy());
+      }
+      long before = version.get();
+      return delegate.read(id)
+        .doOnSuccess(json -> {
+          if (version.get() == before) {
+            cache.put(id, json.copy());
+          }
+        });
+    });
+  }
+
+  @Override
+  public Completable update(long id, JsonObject item) {
+    return delegate.update(id, item)
+      .doOnTerminate(() -> invalidate(id));
+  }
+
+  @Override
+  public Single<Long> update(long id, JsonObject item, long expectedVersion) {
+    return delegate.update(id, item, expectedVersion)
+      .doOnEvent((newVersion, err) -> invalidate(id));
+  }
+
+  @Override
+  public Completable upsert(long id, JsonObject item) {
+    return delegate.upsert(id, item)
+      .doOnTerminate(() -> invalidate(id));
+  }
+
+  @Override
+  public Completable delete(long id) {
+    return delegate.delete(id)
+      .doOnTerminate(() -> invalidate(id));
+  }
+
+  @Override
+  public Single<List<Integer>> updateAll(List<JsonObject> items) {
+    return delegate.updateAll(items)
+      .doOnEvent((counts, err) -> {
+        for (JsonObject item : items) {
+          if (item != null && item.getValue("id") instanceof Number) {
+            invalidate(item.getLong("id"));
+          }
+        }
+      });
+  }
+
+  @Override
+  public Single<List<Integer>> deleteAll(List<Long> ids) {
+    return delegate.deleteAll(ids)
+      .doOnEvent((counts, err) -> ids.forEach(id -> {
+        if (id != null) {
+          invalidate(id);
+        }
+      }));
+  }
+
+  @Override
+  public Single<JsonObject> stats(int top) {
+    return delegate.stats(top);
+  }
+
+  @Override
+  public JsonObject metrics() {
+    long hits = cache.hits();
+    long misses = cache.misses();
+    return delegate.metrics().copy().put("readCache", new JsonObject()
+      .put("size", cache.size())
+      .put("capacity", cache.capacity())
+      .put("hits", hits)
+      .put("misses", misses)
+      .put("hitRatio", hits + misses == 0 ? 0.0 : (double) hits / (hits + misses))
+      .put("evictions", cache.evictions())
+      .put("expirations", cache.expirations()));
+  }
+
+  private void invalidate(long id) {
+    version.incrementAndGet();
+    cache.invalidate(id);
+  }
+
+  @Override
+  public void close() {
+    delegate.close();
+  }
+}
@@ -0,0 +1,243 @@
+package io.vertx.openshift.utils;
+
+import io.reactivex.Completable;
+import io.reactivex.Flowable;
+import io.reactivex.Single;
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+import io.vertx.reactivex.core.Vertx;
+import io.vertx.reactivex.core.eventbus.MessageConsumer;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * {@link DataStore} decorator publishing each successful write going through it as a change event on the event bus,
+ * e.g. {@code {"seq":12,"op":"update","id":3,"name":"Carrots","amount":4}}. A delete only holds the id.
+ * <p>
+ * The events are numbered in the order they are published, from 1. The last ones are kept, so that a consumer which
+ * missed some can {@link #since(long) resume} from the last one it got. The numbering restarts with the store, a
+ * consumer whose last event is unknown must read the items again.
+ */
+public class ChangeFeedDataStore implements DataStore {
+
+  public static final String CREATE = "create";
+  public static final String UPDATE = "update";
+  public static final String UPSERT = "upsert";
+  public static final String DELETE = "delete";
+
+  private final Vertx vertx;
+  private final DataStore delegate;
+  private final String address;
+  private final int backlog;
+
+  private final ArrayDeque<JsonObject> events;
+  private long seq;
+
+  /**
+   * @param vertx    the Vert.x instance whose event bus the events are published on
+   * @param delegate the store holding the items
+   * @param address  the event bus address of the events
+   * @param backlog  the number of events kept to resume from
+   */
+  public ChangeFeedDataStore(Vertx vertx, DataStore delegate, String address, int backlog) {
+    if (backlog < 1) {
+      throw new IllegalArgumentException("The backlog must be positive");
+    }
+    this.vertx = vertx;
+    this.delegate = delegate;
+    this.address = address;
+    this.backlog = backlog;
+    this.events = new ArrayDeque<>(backlog);
+  }
+
+  public String address() {
+    return address;
+  }
+
+  /**
+   * @return the events published after the one numbered {@code seq}, {@code null} if some of them are no longer kept
+   * or if {@code seq} is not a published event
+   */
+  public synchronized List<JsonObject> since(long seq) {
+    long oldest = events.isEmpty() ? this.seq + 1 : events.peekFirst().getLong("seq");
+    if (seq < oldest - 1 || seq > this.seq) {
+      return null;
+    }
+    List<JsonObject> missed = new ArrayList<>((int) (this.seq - seq));
+    for (JsonObject event : events) {
+      if (event.getLong("seq") > seq) {
+        missed.add(event);
+      }
+    }
+    return missed;
+  }
+
+  /**
+   * Hands the events published after the one numbered {@code after} to {@code handler}, each of them once: the kept
+   * ones at once, then the new ones as the event bus delivers them.
+   *
+   * @param after the number of the last event the consumer got, {@code null} for the new events only
+   * @return the consumer of the event bus, {@code null} if some of the events after {@code after} are no longer kept
+   * @see #since(long)
+   */
+  public MessageConsumer<JsonObject> subscribe(Long after, Handler<JsonObject> handler) {
+    // the highest number handled, the events delivered by the event bus and replayed overlap
+    long[] handled = {after == null ? 0 : after};
+    MessageConsumer<JsonObject> consumer = vertx.eventBus().consumer(address, message -> {
+      long seq = message.body().getLong("seq");
+      if (seq > handled[0]) {
+        handled[0] = seq;
+        handler.handle(message.body());
+      }
+    });
+    // registered before the replay, so no event falls in between
+    List<JsonObject> missed = after == null ? Collections.emptyList() : since(after);
+    if (missed == null) {
+      consumer.unregister();
+      return null;
+    }
+    for (JsonObject event : missed) {
+      handled[0] = event.getLong("seq");
+      handler.handle(event);
+    }
+    return consumer;
+  }
+
+  private void publish(String op, long id, JsonObject item) {
+    JsonObject event;
+    synchronized (this) {
+      event = new JsonObject().put("seq", ++seq).put("op", op).put("id", id);
+      if (item != null) {
+        putIfPresent(event, item, "name");
+        putIfPresent(event, item, "amount");
+        putIfPresent(event, item, "version");
+      }
+      if (events.size() == backlog) {
+        events.pollFirst();
+      }
+      events.addLast(event);
+      // published under the lock, so the consumers get the events in order
+      vertx.eventBus().publish(address, event);
+    }
+  }
+
+  private static void putIfPresent(JsonObject event, JsonObject item, String field) {
+    Object value = item.getValue(field);
+    if (value != null) {
+      event.put(field, value);
+    }
+  }
+
+  @Override
+  public Single<JsonObject> create(JsonObject item) {
+    return delegate.create(item)
+      .doOnSuccess(this::created);
+  }
+
+  @Override
+  public Single<List<JsonObject>> createAll(List<JsonObject> items) {
+    return delegate.createAll(items)
+      .doOnSuccess(created -> created.forEach(this::created));
+  }
+
+  private void created(JsonObject item) {
+    // some stores don't return the id, such items can't be told apart by the consumers
+    if (item.getValue("id") instanceof Number) {
+      publish(CREATE, item.getLong("id"), item);
+    }
+  }
+
+  @Override
+  public Flowable<JsonObject> readAll() {
+    return delegate.readAll();
+  }
+
+  @Override
+  public Flowable<Buffer> readAllJson() {
+    return delegate.readAllJson();
+  }
+
+  @Override
+  public Flowable<JsonObject> readPage(long afterId, int limit, JsonObject filter) {
+    return delegate.readPage(afterId, limit, filter);
+  }
+
+  @Override
+  public Single<JsonObject> read(long id) {
+    return delegate.read(id);
+  }
+
+  @Override
+  public Completable update(long id, JsonObject item) {
+    return delegate.update(id, item)
+      .doOnComplete(() -> publish(UPDATE, id, item));
+  }
+
+  @Override
+  public Single<Long> update(long id, JsonObject item, long expectedVersion) {
+    return delegate.update(id, item, expectedVersion)
+      .doOnSuccess(version -> publish(UPDATE, id, item.copy().put("version", version)));
+  }
+
+  @Override
+  public Completable upsert(long id, JsonObject item) {
+    return delegate.upsert(id, item)
+      .doOnComplete(() -> publish(UPSERT, id, item));
+  }
+
+  @Override
+  public Completable delete(long id) {
+    return delegate.delete(id)
+      .doOnComplete(() -> publish(DELETE, id, null));
+  }
+
+  @Override
+  public Single<List<Integer>> updateAll(List<JsonObject> items) {
+    return delegate.updateAll(items)
+      .doOnSuccess(counts -> {
+        for (int i = 0; i < items.size(); i++) {
+          if (counts.get(i) != 0) {
+            publish(UPDATE, items.get(i).getLong("id"), items.get(i));
+          }
+        }
+      });
+  }
+
+  @Override
+  public Single<List<Integer>> deleteAll(List<Long> ids) {
+    return delegate.deleteAll(ids)
+      .doOnSuccess(counts -> {
+        for (int i = 0; i < ids.size(); i++) {
+          if (counts.get(i) != 0) {
+            publish(DELETE, ids.get(i), null);
+          }
+        }
+      });
+  }
+
+  @Override
+  public Single<JsonObject> stats(int top) {
+    return delegate.stats(top);
+  }
+
+  @Override
+  public JsonObject metrics() {
+    JsonObject metrics;
+    synchronized (this) {
+      metrics = new JsonObject()
+        .put("address", address)
+        .put("seq", seq)
+        .put("backlog", events.size());
+    }
+    return delegate.metrics().copy().put("changeFeed", metrics);
+  }
+
+  @Override
+  public void close() {
+    delegate.close();
+  }
+}
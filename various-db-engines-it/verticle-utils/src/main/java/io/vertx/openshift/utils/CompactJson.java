@@ -0,0 +1,215 @@
+package io.vertx.openshift.utils;
+
+import io.reactivex.Flowable;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+
+/**
+ * Writes compact JSON straight into a {@link Buffer}, without building an intermediate {@link String} or
+ * {@link JsonObject}.
+ */
+public final class CompactJson {
+
+  /**
+   * Number of rows encoded into each chunk of a streamed array.
+   */
+  public static final int ROWS_PER_CHUNK = 64;
+
+  private static final byte[] HEX = "0123456789abcdef".getBytes();
+  private static final byte[] NULL = "null".getBytes();
+  private static final byte[] TRUE = "true".getBytes();
+  private static final byte[] FALSE = "false".getBytes();
+  private static final byte[] MIN_LONG = Long.toString(Long.MIN_VALUE).getBytes();
+
+  private CompactJson() {
+  }
+
+  /**
+   * Encodes {@code rows} as a JSON array, streamed in chunks of {@value #ROWS_PER_CHUNK} rows. Nothing is emitted
+   * before the first chunk is complete, so a failure to read the first rows can still be reported as an error
+   * response.
+   *
+   * @param rows    the rows to encode
+   * @param encoder writes a row as a JSON value into the chunk
+   */
+  public static <T> Flowable<Buffer> array(Flowable<T> rows, BiConsumer<Buffer, T> encoder) {
+    return Flowable.defer(() -> {
+      AtomicBoolean first = new AtomicBoolean(true);
+      return rows
+        .buffer(ROWS_PER_CHUNK)
+        .map(chunk -> {
+          Buffer buffer = Buffer.buffer(chunk.size() * 64);
+          for (T row : chunk) {
+            buffer.appendByte((byte) (first.getAndSet(false) ? '[' : ','));
+            encoder.accept(buffer, row);
+          }
+          return buffer;
+        })
+        .concatWith(Flowable.fromCallable(() -> Buffer.buffer(first.get() ? "[]" : "]")));
+    });
+  }
+
+  /**
+   * Writes {@code key} as an object field name, followed by the colon.
+   */
+  public static Buffer writeKey(Buffer buffer, String key) {
+    writeString(buffer, key);
+    return buffer.appendByte((byte) ':');
+  }
+
+  public static Buffer writeObject(Buffer buffer, JsonObject object) {
+    buffer.appendByte((byte) '{');
+    boolean first = true;
+    for (Map.Entry<String, Object> field : object) {
+      if (!first) {
+        buffer.appendByte((byte) ',');
+      }
+      first = false;
+      writeKey(buffer, field.getKey());
+      writeValue(buffer, field.getValue());
+    }
+    return buffer.appendByte((byte) '}');
+  }
+
+  public static Buffer writeArray(Buffer buffer, JsonArray array) {
+    buffer.appendByte((byte) '[');
+    for (int i = 0; i < array.size(); i++) {
+      if (i > 0) {
+        buffer.appendByte((byte) ',');
+      }
+      writeValue(buffer, array.getValue(i));
+    }
+    return buffer.appendByte((byte) ']');
+  }
+
+  /**
+   * Writes any value {@link JsonObject} accepts, other values are written with {@link JsonObject#encode()}. The
+   * non-finite floating point numbers are written as {@code null}.
+   */
+  @SuppressWarnings("unchecked")
+  public static Buffer writeValue(Buffer buffer, Object value) {
+    if (value == null) {
+      return buffer.appendBytes(NULL);
+    }
+    if (value instanceof CharSequence) {
+      return writeString(buffer, (CharSequence) value);
+    }
+    if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+      return writeLong(buffer, ((Number) value).longValue());
+    }
+    if (value instanceof Boolean) {
+      return buffer.appendBytes((Boolean) value ? TRUE : FALSE);
+    }
+    if (value instanceof JsonObject) {
+      return writeObject(buffer, (JsonObject) value);
+    }
+    if (value instanceof JsonArray) {
+      return writeArray(buffer, (JsonArray) value);
+    }
+    if (value instanceof Map) {
+      return writeObject(buffer, new JsonObject((Map<String, Object>) value));
+    }
+    if (value instanceof List) {
+      return writeArray(buffer, new JsonArray((List) value));
+    }
+    if (value instanceof Double || value instanceof Float) {
+      double number = ((Number) value).doubleValue();
+      // JSON has no NaN nor infinities
+      return Double.isNaN(number) || Double.isInfinite(number)
+        ? buffer.appendBytes(NULL)
+        : buffer.appendString(value.toString());
+    }
+    if (value instanceof Number) {
+      return buffer.appendString(value.toString());
+    }
+    // binary, instants and enums follow the Vert.x encoding
+    String encoded = new JsonArray().add(value).encode();
+    return buffer.appendString(encoded.substring(1, encoded.length() - 1));
+  }
+
+  /**
+   * Writes {@code value} in decimal without allocating.
+   */
+  public static Buffer writeLong(Buffer buffer, long value) {
+    if (value == Long.MIN_VALUE) {
+      return buffer.appendBytes(MIN_LONG);
+    }
+    if (value < 0) {
+      buffer.appendByte((byte) '-');
+      value = -value;
+    }
+    long divisor = 1;
+    while (divisor <= value / 10) {
+      divisor *= 10;
+    }
+    for (; divisor > 0; divisor /= 10) {
+      buffer.appendByte((byte) ('0' + value / divisor % 10));
+    }
+    return buffer;
+  }
+
+  /**
+   * Writes {@code value} as a quoted and escaped JSON string, encoded in UTF-8.
+   */
+  public static Buffer writeString(Buffer buffer, CharSequence value) {
+    buffer.appendByte((byte) '"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '"' || c == '\\') {
+        buffer.appendByte((byte) '\\').appendByte((byte) c);
+      } else if (c < 0x20) {
+        writeControl(buffer, c);
+      } else if (c < 0x80) {
+        buffer.appendByte((byte) c);
+      } else if (c < 0x800) {
+        buffer.appendByte((byte) (0xc0 | c >> 6))
+          .appendByte((byte) (0x80 | c & 0x3f));
+      } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+        && Character.isLowSurrogate(value.charAt(i + 1))) {
+        int codePoint = Character.toCodePoint(c, value.charAt(++i));
+        buffer.appendByte((byte) (0xf0 | codePoint >> 18))
+          .appendByte((byte) (0x80 | codePoint >> 12 & 0x3f))
+          .appendByte((byte) (0x80 | codePoint >> 6 & 0x3f))
+          .appendByte((byte) (0x80 | codePoint & 0x3f));
+      } else if (Character.isSurrogate(c)) {
+        // unpaired surrogate, replaced like String.getBytes does
+        buffer.appendByte((byte) '?');
+      } else {
+        buffer.appendByte((byte) (0xe0 | c >> 12))
+          .appendByte((byte) (0x80 | c >> 6 & 0x3f))
+          .appendByte((byte) (0x80 | c & 0x3f));
+      }
+    }
+    return buffer.appendByte((byte) '"');
+  }
+
+  private static void writeControl(Buffer buffer, char c) {
+    buffer.appendByte((byte) '\\');
+    switch (c) {
+      case '\b':
+        buffer.appendByte((byte) 'b');
+        break;
+      case '\f':
+        buffer.appendByte((byte) 'f');
+        break;
+      case '\n':
+        buffer.appendByte((byte) 'n');
+        break;
+      case '\r':
+        buffer.appendByte((byte) 'r');
+        break;
+      case '\t':
+        buffer.appendByte((byte) 't');
+        break;
+      default:
+        buffer.appendByte((byte) 'u').appendByte((byte) '0').appendByte((byte) '0')
+          .appendByte(HEX[c >> 4]).appendByte(HEX[c & 0xf]);
+    }
+  }
+}
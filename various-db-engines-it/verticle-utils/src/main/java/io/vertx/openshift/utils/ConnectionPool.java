@@ -0,0 +1,297 @@
+package io.vertx.openshift.utils;
+
+import com.mchange.v2.c3p0.PooledDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.agroal.api.AgroalDataSource;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.jdbc.spi.DataSourceProvider;
+import io.vertx.ext.jdbc.spi.impl.AgroalCPDataSourceProvider;
+import io.vertx.ext.jdbc.spi.impl.C3P0DataSourceProvider;
+import io.vertx.ext.jdbc.spi.impl.HikariCPDataSourceProvider;
+import io.vertx.reactivex.core.Vertx;
+import io.vertx.reactivex.ext.jdbc.JDBCClient;
+import io.vertx.reactivex.ext.sql.SQLClient;
+import io.vertx.reactivex.ext.sql.SQLConnection;
+
+import javax.management.JMX;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * JDBC connection pool built with one of the providers shipped with the Vert.x JDBC client ({@code agroal},
+ * {@code hikari} or {@code c3p0}), from the connection configuration returned by
+ * {@link TestUtils#allocateDatabase(String, boolean)} and explicit sizing settings.
+ * <p>
+ * The pool is instrumented: {@link #metrics()} reports the connections in use, the callers waiting for one and a
+ * histogram of the time spent acquiring them through {@link #client(Vertx)}, plus the idle connections as reported by
+ * the provider.
+ */
+public class ConnectionPool {
+
+  /**
+   * Upper bounds of the acquisition time histogram buckets, in microseconds, the last bucket is unbounded.
+   */
+  private static final long[] BUCKETS = {100, 250, 500, 1_000, 2_500, 5_000, 10_000, 25_000, 50_000, 100_000,
+    250_000, 500_000, 1_000_000};
+
+  private final String provider;
+  private final DataSourceProvider dataSourceProvider;
+  private final DataSource pooled;
+  private final int maxSize;
+
+  private final AtomicInteger active = new AtomicInteger();
+  private final AtomicInteger waiters = new AtomicInteger();
+  private final LongAdder acquired = new LongAdder();
+  private final LongAdder failures = new LongAdder();
+  private final LongAdder acquisitionTime = new LongAdder();
+  private final AtomicLong maxAcquisitionTime = new AtomicLong();
+  private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS.length + 1);
+
+  private ConnectionPool(String provider, DataSourceProvider dataSourceProvider, DataSource pooled, int maxSize) {
+    this.provider = provider;
+    this.dataSourceProvider = dataSourceProvider;
+    this.pooled = pooled;
+    this.maxSize = maxSize;
+  }
+
+  /**
+   * @param config             the connection configuration: {@code jdbcUrl}, {@code driverClassName},
+   *                           {@code principal} and {@code credential}
+   * @param provider           the pool implementation, one of {@code agroal}, {@code hikari} or {@code c3p0}
+   * @param maxSize            the maximum number of connections
+   * @param minSize            the number of connections kept open even when idle
+   * @param acquisitionTimeout how long, in milliseconds, a caller waits for a connection before failing, not
+   *                           supported by {@code c3p0}
+   * @param idleTimeout        how long, in milliseconds, a connection stays idle before it is closed
+   */
+  public static ConnectionPool create(JsonObject config, String provider, int maxSize, int minSize,
+                                      long acquisitionTimeout, long idleTimeout) throws SQLException {
+    if (maxSize < 1 || minSize < 0 || minSize > maxSize) {
+      throw new IllegalArgumentException("Invalid pool size, min: " + minSize + ", max: " + maxSize);
+    }
+
+    DataSourceProvider dataSourceProvider;
+    JsonObject poolConfig;
+    switch (provider) {
+      case "agroal":
+        dataSourceProvider = new AgroalCPDataSourceProvider();
+        poolConfig = new JsonObject()
+          .put("jdbcUrl", config.getString("jdbcUrl"))
+          .put("driverClassName", config.getString("driverClassName"))
+          .put("principal", config.getString("principal"))
+          .put("credential", config.getString("credential"))
+          .put("maxSize", maxSize)
+          .put("minSize", minSize)
+          .put("initialSize", minSize)
+          .put("acquisitionTimeout", (int) acquisitionTimeout)
+          .put("connectionReapTimeout", idleTimeout)
+          .put("metricsEnabled", true);
+        break;
+      case "hikari":
+        dataSourceProvider = new HikariCPDataSourceProvider();
+        poolConfig = new JsonObject()
+          .put("jdbcUrl", config.getString("jdbcUrl"))
+          .put("driverClassName", config.getString("driverClassName"))
+          .put("username", config.getString("principal"))
+          .put("password", config.getString("credential"))
+          .put("maximumPoolSize", maxSize)
+          .put("minimumIdle", minSize)
+          .put("connectionTimeout", acquisitionTimeout)
+          .put("idleTimeout", idleTimeout)
+          .put("poolName", "vegetables")
+          // the idle connections are only exposed through JMX
+          .put("registerMBeans", true);
+        break;
+      case "c3p0":
+        dataSourceProvider = new C3P0DataSourceProvider();
+        poolConfig = new JsonObject()
+          .put("url", config.getString("jdbcUrl"))
+          .put("driver_class", config.getString("driverClassName"))
+          .put("user", config.getString("principal"))
+          .put("password", config.getString("credential"))
+          .put("max_pool_size", maxSize)
+          .put("min_pool_size", minSize)
+          .put("initial_pool_size", minSize)
+          .put("max_idle_time", (int) TimeUnit.MILLISECONDS.toSeconds(idleTimeout));
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown pool provider '" + provider + "', must be one of [agroal, hikari, c3p0]");
+    }
+    return new ConnectionPool(provider, dataSourceProvider, dataSourceProvider.getDataSource(poolConfig), maxSize);
+  }
+
+  /**
+   * Creates a client using this pool. The acquisition time measured by the client includes the time spent in the
+   * queue of the client, which hands out the connections one at a time.
+   */
+  public JDBCClient client(Vertx vertx) {
+    return new JDBCClient(io.vertx.ext.jdbc.JDBCClient.create(vertx.getDelegate(), new InstrumentedDataSource())) {
+      @Override
+      public SQLClient getConnection(Handler<AsyncResult<SQLConnection>> handler) {
+        waiters.incrementAndGet();
+        long start = System.nanoTime();
+        return super.getConnection(ar -> {
+          waiters.decrementAndGet();
+          if (ar.succeeded()) {
+            record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+          } else {
+            failures.increment();
+          }
+          handler.handle(ar);
+        });
+      }
+    };
+  }
+
+  public void close() throws SQLException {
+    dataSourceProvider.close(pooled);
+  }
+
+  public JsonObject metrics() {
+    long count = acquired.sum();
+    JsonArray buckets = new JsonArray();
+    for (int i = 0; i < histogram.length(); i++) {
+      buckets.add(new JsonObject()
+        .put("le", i < BUCKETS.length ? BUCKETS[i] : null)
+        .put("count", histogram.get(i)));
+    }
+    return new JsonObject()
+      .put("provider", provider)
+      .put("maxSize", maxSize)
+      .put("active", active.get())
+      .put("idle", idle())
+      .put("waiters", waiters.get())
+      .put("acquired", count)
+      .put("failures", failures.sum())
+      .put("acquisitionTimeUs", new JsonObject()
+        .put("average", count == 0 ? 0 : acquisitionTime.sum() / count)
+        .put("max", maxAcquisitionTime.get())
+        .put("buckets", buckets));
+  }
+
+  /**
+   * @return the idle connections reported by the provider, {@code null} if it can't tell
+   */
+  private Integer idle() {
+    try {
+      if (pooled instanceof AgroalDataSource) {
+        return (int) ((AgroalDataSource) pooled).getMetrics().availableCount();
+      }
+      if (pooled instanceof PooledDataSource) {
+        return ((PooledDataSource) pooled).getNumIdleConnectionsDefaultUser();
+      }
+      if ("hikari".equals(provider)) {
+        return JMX.newMXBeanProxy(ManagementFactory.getPlatformMBeanServer(),
+          new ObjectName("com.zaxxer.hikari:type=Pool (vegetables)"), HikariPoolMXBean.class).getIdleConnections();
+      }
+    } catch (SQLException | MalformedObjectNameException | RuntimeException e) {
+      // the pool is not started yet, or already closed
+    }
+    return null;
+  }
+
+  private Connection acquire() throws SQLException {
+    Connection connection = pooled.getConnection();
+    active.incrementAndGet();
+    return tracked(connection);
+  }
+
+  private void record(long micros) {
+    acquired.increment();
+    acquisitionTime.add(micros);
+    maxAcquisitionTime.accumulateAndGet(micros, Math::max);
+    int bucket = 0;
+    while (bucket < BUCKETS.length && micros > BUCKETS[bucket]) {
+      bucket++;
+    }
+    histogram.incrementAndGet(bucket);
+  }
+
+  /**
+   * Wraps {@code connection} to count it as active until it is given back to the pool.
+   */
+  private Connection tracked(Connection connection) {
+    AtomicBoolean closed = new AtomicBoolean();
+    return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+      (proxy, method, args) -> {
+        boolean closing = "close".equals(method.getName()) && method.getParameterCount() == 0
+          && closed.compareAndSet(false, true);
+        try {
+          return method.invoke(connection, args);
+        } catch (InvocationTargetException e) {
+          throw e.getCause();
+        } finally {
+          // once the pool has it back, so that the pool can be closed when none is active
+          if (closing) {
+            active.decrementAndGet();
+          }
+        }
+      });
+  }
+
+  private class InstrumentedDataSource implements DataSource {
+
+    @Override
+    public Connection getConnection() throws SQLException {
+      return acquire();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+      throw new SQLFeatureNotSupportedException("The pool credentials are fixed");
+    }
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+      return pooled.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) throws SQLException {
+      pooled.setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) throws SQLException {
+      pooled.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() throws SQLException {
+      return pooled.getLoginTimeout();
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+      return pooled.getParentLogger();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+      return iface.isInstance(pooled) ? iface.cast(pooled) : pooled.unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+      return iface.isInstance(pooled) || pooled.isWrapperFor(iface);
+    }
+  }
+}
@@ -1,21 +1,114 @@
 package io.vertx.openshift.utils;
 
 import io.reactivex.Completable;
+import io.reactivex.Flowable;
 import io.reactivex.Observable;
 import io.reactivex.Single;
+import io.vertx.core.buffer.Buffer;
 import io.vertx.core.json.JsonObject;
 
+import java.util.ConcurrentModificationException;
+import java.util.List;
+
 /**
  * @author Martin Spisiak (mspisiak@redhat.com) on 03/10/17.
  */
 public interface DataStore {
   Single<JsonObject> create(JsonObject item);
 
-  Observable<JsonObject> readAll();
+  /**
+   * Creates all the given items, failing as a whole if one of them cannot be created.
+   *
+   * @param items the items to create
+   * @return the created items with their generated ids, in the order of {@code items}
+   */
+  default Single<List<JsonObject>> createAll(List<JsonObject> items) {
+    return Observable.fromIterable(items).concatMapSingle(this::create).toList();
+  }
+
+  /**
+   * Streams all the items. The rows are fetched as they are requested by the subscriber.
+   */
+  Flowable<JsonObject> readAll();
+
+  /**
+   * Streams all the items as a compact JSON array, in chunks. The default implementation encodes the items emitted
+   * by {@link #readAll()}.
+   */
+  default Flowable<Buffer> readAllJson() {
+    return CompactJson.array(readAll(), CompactJson::writeObject);
+  }
+
+  /**
+   * Streams a page of items ordered by id.
+   *
+   * @param afterId the id of the last item of the previous page, items with a greater id are returned
+   * @param limit   the maximum number of items
+   * @param filter  optional criteria: {@code name} (exact match), {@code minAmount} and {@code maxAmount} (inclusive)
+   */
+  Flowable<JsonObject> readPage(long afterId, int limit, JsonObject filter);
 
   Single<JsonObject> read(long id);
 
   Completable update(long id, JsonObject item);
 
+  /**
+   * Replaces the item only if it is still at {@code expectedVersion}, the check and the write being a single
+   * statement. It fails with a {@link ConcurrentModificationException} if the item is at another version, or doesn't
+   * exist.
+   *
+   * @return the new version of the item
+   */
+  default Single<Long> update(long id, JsonObject item, long expectedVersion) {
+    return Single.error(new UnsupportedOperationException("Conditional updates are not supported"));
+  }
+
+  /**
+   * Creates the item with the given id, or replaces it if it exists, with a single statement.
+   */
+  default Completable upsert(long id, JsonObject item) {
+    return Completable.error(new UnsupportedOperationException("Upserts are not supported"));
+  }
+
   Completable delete(long id);
+
+  /**
+   * Updates all the given items, identified by their {@code id}, atomically.
+   *
+   * @param items the new values of the items
+   * @return the number of rows updated for each item, in the order of {@code items}, 0 for an unknown item
+   */
+  Single<List<Integer>> updateAll(List<JsonObject> items);
+
+  /**
+   * Deletes all the given items atomically.
+   *
+   * @param ids the ids of the items to delete
+   * @return the number of rows deleted for each id, in the order of {@code ids}, 0 for an unknown item
+   */
+  Single<List<Integer>> deleteAll(List<Long> ids);
+
+  /**
+   * Computes the {@link VegetableStats} of the items. The default implementation goes over all of them.
+   *
+   * @param top the number of names with the largest total amount to return
+   */
+  default Single<JsonObject> stats(int top) {
+    return readAll()
+      .collect(VegetableStats::new, VegetableStats::put)
+      .map(stats -> stats.toJson(top));
+  }
+
+  /**
+   * @return store specific runtime counters, empty by default
+   */
+  default JsonObject metrics() {
+    return new JsonObject();
+  }
+
+  /**
+   * Releases the resources the store holds on to, e.g. its connections. Nothing to release by default.
+   */
+  default void close() {
+  }
 }
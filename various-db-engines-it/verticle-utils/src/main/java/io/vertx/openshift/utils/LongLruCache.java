@@ -0,0 +1,248 @@
+package io.vertx.openshift.utils;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded LRU cache with primitive {@code long} keys and a time to live.
+ * <p>
+ * Entries live in fixed size arrays linked in access order, and are indexed by an open addressing hash table, so
+ * neither lookups nor updates box the keys or allocate. All methods are synchronized.
+ *
+ * @param <V> the type of the cached values
+ */
+public class LongLruCache<V> {
+
+  private static final int NONE = -1;
+
+  private final int capacity;
+  private final long ttl;
+
+  // entries
+  private final long[] keys;
+  private final Object[] values;
+  private final long[] expirations;
+  private final int[] prev;
+  private final int[] next;
+  private int head = NONE;
+  private int tail = NONE;
+  private int free;
+  private int size;
+
+  // hash index, slots hold entry index + 1, 0 marks an empty slot
+  private final int[] table;
+  private final int mask;
+
+  private long hits;
+  private long misses;
+  private long evictions;
+  private long expired;
+
+  /**
+   * @param capacity the maximum number of entries
+   * @param ttl      how long an entry stays valid after it has been put, in milliseconds
+   */
+  public LongLruCache(int capacity, long ttl) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("The capacity must be positive");
+    }
+    if (ttl < 1) {
+      throw new IllegalArgumentException("The time to live must be positive");
+    }
+    this.capacity = capacity;
+    this.ttl = TimeUnit.MILLISECONDS.toNanos(ttl);
+    this.keys = new long[capacity];
+    this.values = new Object[capacity];
+    this.expirations = new long[capacity];
+    this.prev = new int[capacity];
+    this.next = new int[capacity];
+    // free entries are chained through next
+    for (int i = 0; i < capacity; i++) {
+      next[i] = i + 1 < capacity ? i + 1 : NONE;
+    }
+    this.free = 0;
+    int tableSize = Integer.highestOneBit(capacity * 2 - 1) << 1;
+    this.table = new int[tableSize];
+    this.mask = tableSize - 1;
+  }
+
+  /**
+   * @return the value cached for {@code key}, {@code null} if there is none or it has expired
+   */
+  @SuppressWarnings("unchecked")
+  public synchronized V get(long key) {
+    int slot = find(key);
+    if (slot == NONE) {
+      misses++;
+      return null;
+    }
+    int entry = table[slot] - 1;
+    if (expirations[entry] - System.nanoTime() <= 0) {
+      expired++;
+      misses++;
+      remove(slot);
+      return null;
+    }
+    hits++;
+    moveToHead(entry);
+    return (V) values[entry];
+  }
+
+  /**
+   * Caches {@code value} for {@code key}, evicting the least recently used entry if the cache is full.
+   */
+  public synchronized void put(long key, V value) {
+    int slot = find(key);
+    int entry;
+    if (slot != NONE) {
+      entry = table[slot] - 1;
+      moveToHead(entry);
+    } else {
+      if (size == capacity) {
+        evictions++;
+        remove(find(keys[tail]));
+      }
+      entry = free;
+      free = next[entry];
+      keys[entry] = key;
+      link(entry);
+      table[emptySlot(key)] = entry + 1;
+      size++;
+    }
+    values[entry] = value;
+    expirations[entry] = System.nanoTime() + ttl;
+  }
+
+  /**
+   * Removes the entry cached for {@code key}, if any.
+   */
+  public synchronized void invalidate(long key) {
+    int slot = find(key);
+    if (slot != NONE) {
+      remove(slot);
+    }
+  }
+
+  /**
+   * Removes all the entries, the counters are kept.
+   */
+  public synchronized void clear() {
+    Arrays.fill(table, 0);
+    Arrays.fill(values, null);
+    for (int i = 0; i < capacity; i++) {
+      next[i] = i + 1 < capacity ? i + 1 : NONE;
+    }
+    free = 0;
+    head = NONE;
+    tail = NONE;
+    size = 0;
+  }
+
+  public synchronized int size() {
+    return size;
+  }
+
+  public int capacity() {
+    return capacity;
+  }
+
+  public synchronized long hits() {
+    return hits;
+  }
+
+  public synchronized long misses() {
+    return misses;
+  }
+
+  /**
+   * @return the number of entries removed to make room for new ones
+   */
+  public synchronized long evictions() {
+    return evictions;
+  }
+
+  /**
+   * @return the number of entries dropped because their time to live had elapsed
+   */
+  public synchronized long expirations() {
+    return expired;
+  }
+
+  private static int hash(long key) {
+    long h = key * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32));
+  }
+
+  private int find(long key) {
+    int slot = hash(key) & mask;
+    while (table[slot] != 0) {
+      if (keys[table[slot] - 1] == key) {
+        return slot;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return NONE;
+  }
+
+  private int emptySlot(long key) {
+    int slot = hash(key) & mask;
+    while (table[slot] != 0) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  private void remove(int slot) {
+    int entry = table[slot] - 1;
+    unlink(entry);
+    values[entry] = null;
+    next[entry] = free;
+    free = entry;
+    size--;
+
+    // backward shift deletion keeps the probe sequences of the following slots intact
+    int hole = slot;
+    int current = (slot + 1) & mask;
+    while (table[current] != 0) {
+      int home = hash(keys[table[current] - 1]) & mask;
+      if (((current - home) & mask) >= ((current - hole) & mask)) {
+        table[hole] = table[current];
+        hole = current;
+      }
+      current = (current + 1) & mask;
+    }
+    table[hole] = 0;
+  }
+
+  private void link(int entry) {
+    prev[entry] = NONE;
+    next[entry] = head;
+    if (head != NONE) {
+      prev[head] = entry;
+    }
+    head = entry;
+    if (tail == NONE) {
+      tail = entry;
+    }
+  }
+
+  private void unlink(int entry) {
+    if (prev[entry] != NONE) {
+      next[prev[entry]] = next[entry];
+    } else {
+      head = next[entry];
+    }
+    if (next[entry] != NONE) {
+      prev[next[entry]] = prev[entry];
+    } else {
+      tail = prev[entry];
+    }
+  }
+
+  private void moveToHead(int entry) {
+    if (head != entry) {
+      unlink(entry);
+      link(entry);
+    }
+  }
+}
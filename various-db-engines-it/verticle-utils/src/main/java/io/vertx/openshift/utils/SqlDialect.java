@@ -0,0 +1,131 @@
+package io.vertx.openshift.utils;
+
+import io.vertx.openshift.utils.impl.MySqlDialect;
+import io.vertx.openshift.utils.impl.OracleDialect;
+import io.vertx.openshift.utils.impl.PostgreSqlDialect;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.ServiceLoader;
+
+/**
+ * The SQL differences between the databases the JDBC vegetable stores run on. The default methods follow the SQL
+ * standard, as implemented by H2.
+ * <p>
+ * Additional dialects can be registered as {@link ServiceLoader} services, they are tried before the built-in ones.
+ */
+public interface SqlDialect {
+
+  /**
+   * The columns of the vegetables table, in the order used by the stores.
+   */
+  List<String> COLUMNS = Arrays.asList("id", "name", "amount", "version");
+
+  SqlDialect STANDARD = jdbcUrl -> true;
+
+  /**
+   * @return the first dialect supporting {@code jdbcUrl}, {@link #STANDARD} if none does
+   */
+  static SqlDialect forJdbcUrl(String jdbcUrl) {
+    if (jdbcUrl == null) {
+      return STANDARD;
+    }
+    for (SqlDialect dialect : ServiceLoader.load(SqlDialect.class)) {
+      if (dialect.supports(jdbcUrl)) {
+        return dialect;
+      }
+    }
+    for (SqlDialect dialect : Arrays.asList(new PostgreSqlDialect(), new MySqlDialect(), new OracleDialect())) {
+      if (dialect.supports(jdbcUrl)) {
+        return dialect;
+      }
+    }
+    return STANDARD;
+  }
+
+  boolean supports(String jdbcUrl);
+
+  /**
+   * Whether the database folds unquoted identifiers to upper case, as the standard does, rather than to lower case.
+   */
+  default boolean upperCaseIdentifiers() {
+    return true;
+  }
+
+  /**
+   * @return {@code column} as the database names it when it was created unquoted
+   */
+  default String identifier(String column) {
+    return upperCaseIdentifiers() ? column.toUpperCase(Locale.ROOT) : column.toLowerCase(Locale.ROOT);
+  }
+
+  /**
+   * @return the {@link #COLUMNS} the driver returns as generated keys of an INSERT, in the same order. Only the id by
+   * default, which is all that most drivers return. The values of the other columns are the inserted ones, or the
+   * column defaults.
+   */
+  default List<String> generatedColumns() {
+    return Collections.singletonList("id");
+  }
+
+  /**
+   * @return whether an INSERT can hold several rows in its VALUES clause
+   */
+  default boolean multiRowInsert() {
+    return true;
+  }
+
+  /**
+   * @return the query returning the name of the sequence generating the ids, {@code null} if the ids are only known
+   * once the rows are inserted. When there is one, the items created together are inserted with a JDBC batch, in a
+   * single round trip, with ids taken from the sequence beforehand.
+   */
+  default String idSequenceQuery() {
+    return null;
+  }
+
+  /**
+   * @return the query taking from {@code sequence} as many ids as its parameter
+   * @see #idSequenceQuery()
+   */
+  default String nextIdsQuery(String sequence) {
+    throw new UnsupportedOperationException("The ids are not taken from a sequence");
+  }
+
+  /**
+   * @return the clause making an UPDATE or DELETE return the given columns of the rows it changed, {@code null} if
+   * the database has none
+   */
+  default String returningClause(String columns) {
+    return null;
+  }
+
+  /**
+   * @return the clause restricting a query to the number of rows given by its last parameter
+   */
+  default String limitClause() {
+    return " FETCH FIRST ? ROWS ONLY";
+  }
+
+  /**
+   * @return the statement moving the generator of the ids past the id given as its parameter, run after
+   * {@link #upsert()} so that the ids generated afterwards don't collide with it, {@code null} if the database moves it
+   * by itself when an id is inserted, as H2 and MySQL do
+   */
+  default String advanceIdSequence() {
+    return null;
+  }
+
+  /**
+   * @return the statement inserting the item whose id, name and amount are its parameters, or replacing it
+   */
+  default String upsert() {
+    // the parameters are cast, some databases can't type them from the select list alone
+    return "MERGE INTO vegetables v USING (SELECT CAST(? AS BIGINT) AS id, CAST(? AS VARCHAR(40)) AS name, "
+      + "CAST(? AS INT) AS amount FROM dual) s ON (v.id = s.id) "
+      + "WHEN MATCHED THEN UPDATE SET v.name = s.name, v.amount = s.amount, v.version = v.version + 1 "
+      + "WHEN NOT MATCHED THEN INSERT (id, name, amount) VALUES (s.id, s.name, s.amount)";
+  }
+}
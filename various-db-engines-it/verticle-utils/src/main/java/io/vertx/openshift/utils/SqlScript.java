@@ -0,0 +1,270 @@
+package io.vertx.openshift.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Splits a SQL script into statements. Unlike a split on {@code ;}, it knows about:
+ * <ul>
+ * <li>string literals, quoted identifiers and PostgreSQL dollar quoted bodies</li>
+ * <li>{@code --} and {@code /* *}{@code /} comments</li>
+ * <li>the MySQL {@code DELIMITER} directive</li>
+ * <li>PL/SQL blocks and stored procedure bodies, whose inner {@code ;} don't end the statement: they end with a line
+ * holding a single {@code /}, or at the end of the script</li>
+ * </ul>
+ * Each statement is classified, so that a runner knows which ones can be batched or run concurrently.
+ */
+public final class SqlScript {
+
+  public enum Kind {
+    /**
+     * Schema change whose objects are known, it can run concurrently with those on other objects.
+     */
+    DDL,
+    /**
+     * Row change, it can be batched with the others.
+     */
+    DML,
+    /**
+     * Transaction control, e.g. {@code BEGIN} or {@code COMMIT}.
+     */
+    TRANSACTION,
+    /**
+     * Anything else, e.g. procedural blocks, or DDL whose objects are unknown.
+     */
+    OTHER
+  }
+
+  private static final Pattern DELIMITER = Pattern.compile("(?i)DELIMITER\\s+(\\S+)\\s*");
+  private static final Pattern BLOCK = Pattern.compile("(?is)(DECLARE\\b|BEGIN\\s+(?!(TRANSACTION|WORK)\\b)\\S).*");
+  private static final Pattern ROUTINE = Pattern.compile("(?is)CREATE\\s+(OR\\s+REPLACE\\s+)?((NON)?EDITIONABLE\\s+)?"
+    + "(DEFINER\\s*=\\s*\\S+\\s+)?(PROCEDURE|FUNCTION|TRIGGER|PACKAGE|TYPE\\s+BODY)\\b.*");
+  /**
+   * A routine has a procedural body when it isn't given as a string literal, e.g. {@code AS 'SELECT 1'}.
+   */
+  private static final Pattern ROUTINE_BODY = Pattern.compile("(?is).*\\b(BEGIN|DECLARE)\\b.*|.*\\b(AS|IS)\\s+[^'\\s].*");
+  private static final Pattern TRANSACTION = Pattern.compile("(?i)(BEGIN|START\\s+TRANSACTION|COMMIT|ROLLBACK|END)\\b.*",
+    Pattern.DOTALL);
+  private static final Pattern DDL = Pattern.compile("(?i)(CREATE|ALTER|DROP|TRUNCATE|COMMENT|RENAME)\\b.*",
+    Pattern.DOTALL);
+  private static final Pattern DML = Pattern.compile("(?i)(INSERT|UPDATE|DELETE|MERGE|REPLACE|UPSERT)\\b.*",
+    Pattern.DOTALL);
+  private static final String IDENTIFIER = "(?:[\\w$]+|\"[^\"]+\"|`[^`]+`)";
+  private static final Pattern OBJECT = Pattern.compile("(?i)\\b(?:TABLE|VIEW|INDEX|SEQUENCE|ON|REFERENCES|FROM|JOIN"
+    + "|INTO)\\s+(?:IF\\s+(?:NOT\\s+)?EXISTS\\s+)?(" + IDENTIFIER + "(?:\\." + IDENTIFIER + ")*)");
+
+  private SqlScript() {
+  }
+
+  /**
+   * A statement of the script, without its terminator.
+   */
+  public static final class Statement {
+    private final String sql;
+    private final Kind kind;
+    private final Set<String> objects;
+
+    Statement(String sql, Kind kind, Set<String> objects) {
+      this.sql = sql;
+      this.kind = kind;
+      this.objects = objects;
+    }
+
+    public String sql() {
+      return sql;
+    }
+
+    public Kind kind() {
+      return kind;
+    }
+
+    /**
+     * @return the lower case names of the tables, views, indexes and sequences a {@link Kind#DDL} statement touches
+     * or depends on
+     */
+    public Set<String> objects() {
+      return objects;
+    }
+
+    @Override
+    public String toString() {
+      return kind + ": " + sql;
+    }
+  }
+
+  public static List<Statement> parse(String script) {
+    return new Parser(script).parse();
+  }
+
+  private static Statement statement(String sql, String code) {
+    String head = code.trim();
+    if (BLOCK.matcher(head).matches() || ROUTINE.matcher(head).matches()) {
+      return new Statement(sql, Kind.OTHER, Collections.emptySet());
+    }
+    if (TRANSACTION.matcher(head).matches()) {
+      return new Statement(sql, Kind.TRANSACTION, Collections.emptySet());
+    }
+    if (DML.matcher(head).matches()) {
+      return new Statement(sql, Kind.DML, Collections.emptySet());
+    }
+    if (DDL.matcher(head).matches()) {
+      Set<String> objects = new LinkedHashSet<>();
+      Matcher matcher = OBJECT.matcher(head);
+      while (matcher.find()) {
+        objects.add(matcher.group(1).replaceAll("[\"`]", "").toLowerCase(Locale.ROOT));
+      }
+      if (!objects.isEmpty()) {
+        return new Statement(sql, Kind.DDL, Collections.unmodifiableSet(objects));
+      }
+    }
+    return new Statement(sql, Kind.OTHER, Collections.emptySet());
+  }
+
+  private static class Parser {
+    private final String script;
+    private final List<Statement> statements = new ArrayList<>();
+    private final StringBuilder sql = new StringBuilder();
+    /**
+     * The statement without its comments and the content of its literals, used to classify it.
+     */
+    private final StringBuilder code = new StringBuilder();
+    private String delimiter = ";";
+    private boolean dollarQuoted;
+    private int pos;
+
+    Parser(String script) {
+      this.script = script;
+    }
+
+    List<Statement> parse() {
+      while (pos < script.length()) {
+        if (atLineStart() && directive()) {
+          continue;
+        }
+        char c = script.charAt(pos);
+        if (script.startsWith(delimiter, pos) && !inBlock()) {
+          pos += delimiter.length();
+          flush();
+        } else if (c == '\'') {
+          literal(script.indexOf(c, pos + 1), 1);
+        } else if (c == '"' || c == '`') {
+          identifier(script.indexOf(c, pos + 1));
+        } else if (c == '-' && script.startsWith("--", pos)) {
+          comment(script.indexOf('\n', pos), 0);
+        } else if (c == '/' && script.startsWith("/*", pos)) {
+          comment(script.indexOf("*/", pos + 2), 2);
+        } else if (c == '$' && dollarQuote()) {
+          dollarQuoted = true;
+        } else {
+          sql.append(c);
+          code.append(c);
+          pos++;
+        }
+      }
+      flush();
+      return statements;
+    }
+
+    /**
+     * Handles the lines holding a {@code DELIMITER} directive or a single {@code /}.
+     *
+     * @return whether the current line was one of them
+     */
+    private boolean directive() {
+      int end = script.indexOf('\n', pos);
+      end = end < 0 ? script.length() : end + 1;
+      String line = script.substring(pos, end).trim();
+      if ("/".equals(line)) {
+        pos = end;
+        flush();
+        return true;
+      }
+      Matcher matcher = DELIMITER.matcher(line);
+      if (code.toString().trim().isEmpty() && matcher.matches()) {
+        pos = end;
+        delimiter = matcher.group(1);
+        return true;
+      }
+      return false;
+    }
+
+    private boolean atLineStart() {
+      return pos == 0 || script.charAt(pos - 1) == '\n';
+    }
+
+    /**
+     * @return whether the statement is a procedural block, whose end is a line holding a single {@code /}
+     */
+    private boolean inBlock() {
+      // with a custom delimiter, or with a dollar quoted body, the block already has a distinct end
+      if (!";".equals(delimiter) || dollarQuoted) {
+        return false;
+      }
+      String head = code.toString().trim();
+      return BLOCK.matcher(head).matches()
+        || ROUTINE.matcher(head).matches() && ROUTINE_BODY.matcher(head).matches();
+    }
+
+    /**
+     * Appends a literal ending at {@code end}, it is unterminated if {@code end} is negative.
+     */
+    private void literal(int end, int terminatorLength) {
+      int next = end < 0 ? script.length() : end + terminatorLength;
+      sql.append(script, pos, next);
+      code.append("''");
+      pos = next;
+    }
+
+    private void identifier(int end) {
+      int next = end < 0 ? script.length() : end + 1;
+      sql.append(script, pos, next);
+      code.append(script, pos, next);
+      pos = next;
+    }
+
+    private void comment(int end, int terminatorLength) {
+      int next = end < 0 ? script.length() : end + terminatorLength;
+      sql.append(script, pos, next);
+      code.append(' ');
+      pos = next;
+    }
+
+    /**
+     * Appends the dollar quoted body starting at the current position, e.g. {@code $body$ ... $body$}.
+     *
+     * @return whether there is such a body, {@code $1} parameters and identifiers containing {@code $} are not
+     */
+    private boolean dollarQuote() {
+      if (pos > 0 && (Character.isLetterOrDigit(script.charAt(pos - 1)) || script.charAt(pos - 1) == '_')) {
+        return false;
+      }
+      int tagEnd = pos + 1;
+      while (tagEnd < script.length() && (Character.isLetter(script.charAt(tagEnd)) || script.charAt(tagEnd) == '_'
+        || tagEnd > pos + 1 && Character.isDigit(script.charAt(tagEnd)))) {
+        tagEnd++;
+      }
+      if (tagEnd >= script.length() || script.charAt(tagEnd) != '$') {
+        return false;
+      }
+      String tag = script.substring(pos, tagEnd + 1);
+      literal(script.indexOf(tag, tagEnd + 1), tag.length());
+      return true;
+    }
+
+    private void flush() {
+      String statement = sql.toString().trim();
+      if (!code.toString().trim().isEmpty()) {
+        statements.add(statement(statement, code.toString()));
+      }
+      sql.setLength(0);
+      code.setLength(0);
+      dollarQuoted = false;
+    }
+  }
+}
@@ -0,0 +1,181 @@
+package io.vertx.openshift.utils;
+
+import io.reactivex.Completable;
+import io.reactivex.Flowable;
+import io.reactivex.Single;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.openshift.utils.SqlScript.Kind;
+import io.vertx.openshift.utils.SqlScript.Statement;
+import io.vertx.reactivex.ext.jdbc.JDBCClient;
+import io.vertx.reactivex.ext.sql.SQLConnection;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Runs a {@link SqlScript} as a sequence of phases, each made of consecutive statements of the same kind:
+ * <ul>
+ * <li>the DDL statements are split into groups touching distinct objects, the groups run concurrently on their own
+ * pooled connection</li>
+ * <li>the DML statements run in JDBC batches, in a single transaction</li>
+ * <li>the other statements run one after another</li>
+ * </ul>
+ * The transaction control statements of the script are skipped, and the statements of different phases don't share a
+ * session, so the script must not rely on session settings.
+ */
+public class SqlScriptRunner {
+
+  private final JDBCClient client;
+  private final int concurrency;
+  private final int batchSize;
+
+  /**
+   * @param client      the client whose pool provides the connections
+   * @param concurrency the maximum number of DDL groups run at the same time
+   * @param batchSize   the maximum number of DML statements sent in a JDBC batch
+   */
+  public SqlScriptRunner(JDBCClient client, int concurrency, int batchSize) {
+    if (concurrency < 1 || batchSize < 1) {
+      throw new IllegalArgumentException("The concurrency and the batch size must be positive");
+    }
+    this.client = client;
+    this.concurrency = concurrency;
+    this.batchSize = batchSize;
+  }
+
+  /**
+   * @return a report of the run, with the time spent parsing the script and running each phase
+   */
+  public Single<JsonObject> run(String script) {
+    return Single.defer(() -> {
+      long start = System.nanoTime();
+      List<Statement> statements = SqlScript.parse(script);
+      long parsed = System.nanoTime();
+      JsonArray phases = new JsonArray();
+      return Flowable.fromIterable(phases(statements))
+        .concatMapCompletable(phase -> timed(phase, phases))
+        .andThen(Single.fromCallable(() -> new JsonObject()
+          .put("statements", statements.size())
+          .put("parseMs", TimeUnit.NANOSECONDS.toMillis(parsed - start))
+          .put("elapsedMs", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start))
+          .put("phases", phases)));
+    });
+  }
+
+  /**
+   * Splits the statements into phases, each holding consecutive statements of the same kind.
+   */
+  static List<List<Statement>> phases(List<Statement> statements) {
+    List<List<Statement>> phases = new ArrayList<>();
+    List<Statement> phase = null;
+    for (Statement statement : statements) {
+      if (phase == null || phase.get(0).kind() != statement.kind()) {
+        phase = new ArrayList<>();
+        phases.add(phase);
+      }
+      phase.add(statement);
+    }
+    return phases;
+  }
+
+  /**
+   * Splits DDL statements into groups that can run concurrently: the statements touching a common object belong to
+   * the same group, and keep their order.
+   */
+  static List<List<Statement>> independentGroups(List<Statement> ddl) {
+    int[] parent = new int[ddl.size()];
+    Map<String, Integer> owners = new HashMap<>();
+    for (int i = 0; i < ddl.size(); i++) {
+      parent[i] = i;
+      for (String object : ddl.get(i).objects()) {
+        Integer owner = owners.putIfAbsent(object, i);
+        if (owner != null) {
+          parent[root(parent, i)] = root(parent, owner);
+        }
+      }
+    }
+    Map<Integer, List<Statement>> groups = new LinkedHashMap<>();
+    for (int i = 0; i < ddl.size(); i++) {
+      groups.computeIfAbsent(root(parent, i), root -> new ArrayList<>()).add(ddl.get(i));
+    }
+    return new ArrayList<>(groups.values());
+  }
+
+  private static int root(int[] parent, int i) {
+    while (parent[i] != i) {
+      parent[i] = parent[parent[i]];
+      i = parent[i];
+    }
+    return i;
+  }
+
+  private Completable timed(List<Statement> phase, JsonArray report) {
+    Kind kind = phase.get(0).kind();
+    JsonObject result = new JsonObject()
+      .put("kind", kind.name().toLowerCase(Locale.ROOT))
+      .put("statements", phase.size());
+    Completable run;
+    switch (kind) {
+      case DDL:
+        List<List<Statement>> groups = independentGroups(phase);
+        result.put("groups", groups.size());
+        run = Flowable.fromIterable(groups)
+          .flatMapCompletable(group -> withConnection(connection -> execute(connection, group)), false, concurrency);
+        break;
+      case DML:
+        result.put("batches", (phase.size() + batchSize - 1) / batchSize);
+        run = withConnection(connection -> transaction(connection, phase));
+        break;
+      case TRANSACTION:
+        // the DML phases already run in their own transaction
+        result.put("skipped", true);
+        run = Completable.complete();
+        break;
+      default:
+        run = withConnection(connection -> execute(connection, phase));
+    }
+    return Completable.defer(() -> {
+      long start = System.nanoTime();
+      return run.doOnComplete(() ->
+        report.add(result.put("elapsedMs", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start))));
+    });
+  }
+
+  private Completable withConnection(Function<SQLConnection, Completable> work) {
+    return client.rxGetConnection()
+      .flatMapCompletable(connection -> work.apply(connection).doFinally(connection::close));
+  }
+
+  private static Completable execute(SQLConnection connection, List<Statement> statements) {
+    return Flowable.fromIterable(statements)
+      .concatMapCompletable(statement -> connection.rxExecute(statement.sql()));
+  }
+
+  private Completable transaction(SQLConnection connection, List<Statement> statements) {
+    List<List<String>> batches = new ArrayList<>();
+    for (int i = 0; i < statements.size(); i += batchSize) {
+      batches.add(statements.subList(i, Math.min(i + batchSize, statements.size())).stream()
+        .map(Statement::sql)
+        .collect(Collectors.toList()));
+    }
+    return connection.rxSetAutoCommit(false)
+      .andThen(Flowable.fromIterable(batches).concatMapCompletable(batch -> connection.rxBatch(batch).ignoreElement()))
+      .andThen(connection.rxCommit())
+      .onErrorResumeNext(err -> connection.rxRollback()
+        .onErrorComplete()
+        .andThen(Completable.error(err)))
+      // the connection goes back to the pool as it was taken
+      .andThen(Completable.defer(() -> connection.rxSetAutoCommit(true)))
+      .onErrorResumeNext(err -> connection.rxSetAutoCommit(true)
+        .onErrorComplete()
+        .andThen(Completable.error(err)));
+  }
+}
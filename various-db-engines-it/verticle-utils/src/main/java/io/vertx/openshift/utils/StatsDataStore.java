@@ -0,0 +1,221 @@
+package io.vertx.openshift.utils;
+
+import io.reactivex.Completable;
+import io.reactivex.Flowable;
+import io.reactivex.Single;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+import io.vertx.reactivex.core.Vertx;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * {@link DataStore} decorator serving {@link #stats(int)} from {@link VegetableStats} kept in memory: the successful
+ * writes going through it are applied to the aggregate, which is rebuilt from {@link #readAll()} periodically to
+ * catch up with the writes made elsewhere, e.g. by another instance.
+ * <p>
+ * The changes applied while the aggregate is being rebuilt are replayed on the new one, they set or remove whole
+ * items so replaying a change the scan already saw is harmless. Until the first rebuild is complete, the stats are
+ * computed by the delegate.
+ * <p>
+ * The aggregate keeps the name and amount of every item, so that a replaced or deleted item is taken out of it
+ * exactly: its memory grows with the table, as does the cost of each rebuild.
+ */
+public class StatsDataStore implements DataStore {
+
+  private final DataStore delegate;
+
+  private VegetableStats stats;
+  /**
+   * The changes applied since the current rebuild started, {@code null} when no rebuild is running.
+   */
+  private List<Consumer<VegetableStats>> replayed;
+  private long reconciliations;
+  private long failedReconciliations;
+  private JsonObject lastReconciliation;
+
+  /**
+   * @param vertx    the Vert.x instance used to schedule the rebuilds
+   * @param delegate the store holding the items
+   * @param interval how often, in milliseconds, the aggregate is rebuilt
+   */
+  public StatsDataStore(Vertx vertx, DataStore delegate, long interval) {
+    if (interval < 1) {
+      throw new IllegalArgumentException("The reconciliation interval must be positive");
+    }
+    this.delegate = delegate;
+    reconcile();
+    vertx.setPeriodic(interval, timer -> reconcile());
+  }
+
+  /**
+   * Rebuilds the aggregate from all the items, unless a rebuild is already running.
+   */
+  public void reconcile() {
+    synchronized (this) {
+      if (replayed != null) {
+        return;
+      }
+      replayed = new ArrayList<>();
+    }
+    long start = System.currentTimeMillis();
+    VegetableStats rebuilt = new VegetableStats();
+    delegate.readAll()
+      .subscribe(
+        rebuilt::put,
+        err -> {
+          synchronized (this) {
+            replayed = null;
+            failedReconciliations++;
+          }
+        },
+        () -> {
+          synchronized (this) {
+            replayed.forEach(change -> change.accept(rebuilt));
+            replayed = null;
+            reconciliations++;
+            lastReconciliation = new JsonObject()
+              .put("at", start)
+              .put("durationMs", System.currentTimeMillis() - start)
+              // the difference with the aggregate maintained so far, made by the writes it didn't see
+              .put("countDrift", stats == null ? 0 : rebuilt.count() - stats.count())
+              .put("amountDrift", stats == null ? 0 : rebuilt.totalAmount() - stats.totalAmount());
+            stats = rebuilt;
+          }
+        });
+  }
+
+  private synchronized void apply(Consumer<VegetableStats> change) {
+    if (stats != null) {
+      change.accept(stats);
+    }
+    if (replayed != null) {
+      replayed.add(change);
+    }
+  }
+
+  @Override
+  public Single<JsonObject> stats(int top) {
+    synchronized (this) {
+      if (stats != null) {
+        return Single.just(stats.toJson(top));
+      }
+    }
+    return delegate.stats(top);
+  }
+
+  @Override
+  public Single<JsonObject> create(JsonObject item) {
+    return delegate.create(item)
+      .doOnSuccess(this::created);
+  }
+
+  @Override
+  public Single<List<JsonObject>> createAll(List<JsonObject> items) {
+    return delegate.createAll(items)
+      .doOnSuccess(created -> created.forEach(this::created));
+  }
+
+  private void created(JsonObject item) {
+    // some stores don't return the id, the next rebuild catches up with such items
+    if (item.getValue("id") instanceof Number) {
+      JsonObject copy = item.copy();
+      apply(stats -> stats.put(copy));
+    }
+  }
+
+  @Override
+  public Flowable<JsonObject> readAll() {
+    return delegate.readAll();
+  }
+
+  @Override
+  public Flowable<Buffer> readAllJson() {
+    return delegate.readAllJson();
+  }
+
+  @Override
+  public Flowable<JsonObject> readPage(long afterId, int limit, JsonObject filter) {
+    return delegate.readPage(afterId, limit, filter);
+  }
+
+  @Override
+  public Single<JsonObject> read(long id) {
+    return delegate.read(id);
+  }
+
+  @Override
+  public Completable update(long id, JsonObject item) {
+    return delegate.update(id, item)
+      .doOnComplete(() -> updated(id, item));
+  }
+
+  @Override
+  public Single<Long> update(long id, JsonObject item, long expectedVersion) {
+    return delegate.update(id, item, expectedVersion)
+      .doOnSuccess(version -> updated(id, item));
+  }
+
+  @Override
+  public Completable upsert(long id, JsonObject item) {
+    return delegate.upsert(id, item)
+      .doOnComplete(() -> updated(id, item));
+  }
+
+  private void updated(long id, JsonObject item) {
+    String name = item.getString("name");
+    int amount = item.getInteger("amount", 0);
+    apply(stats -> stats.put(id, name, amount));
+  }
+
+  @Override
+  public Completable delete(long id) {
+    return delegate.delete(id)
+      .doOnComplete(() -> apply(stats -> stats.remove(id)));
+  }
+
+  @Override
+  public Single<List<Integer>> updateAll(List<JsonObject> items) {
+    return delegate.updateAll(items)
+      .doOnSuccess(counts -> {
+        for (int i = 0; i < items.size(); i++) {
+          if (counts.get(i) != 0) {
+            updated(items.get(i).getLong("id"), items.get(i));
+          }
+        }
+      });
+  }
+
+  @Override
+  public Single<List<Integer>> deleteAll(List<Long> ids) {
+    return delegate.deleteAll(ids)
+      .doOnSuccess(counts -> {
+        for (int i = 0; i < ids.size(); i++) {
+          if (counts.get(i) != 0) {
+            long id = ids.get(i);
+            apply(stats -> stats.remove(id));
+          }
+        }
+      });
+  }
+
+  @Override
+  public JsonObject metrics() {
+    JsonObject metrics;
+    synchronized (this) {
+      metrics = new JsonObject()
+        .put("items", stats == null ? null : stats.count())
+        .put("reconciliations", reconciliations)
+        .put("failedReconciliations", failedReconciliations)
+        .put("lastReconciliation", lastReconciliation == null ? null : lastReconciliation.copy());
+    }
+    return delegate.metrics().copy().put("stats", metrics);
+  }
+
+  @Override
+  public void close() {
+    delegate.close();
+  }
+}
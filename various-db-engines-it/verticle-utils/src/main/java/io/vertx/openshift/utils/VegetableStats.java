@@ -0,0 +1,126 @@
+package io.vertx.openshift.utils;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Aggregate of the vegetables: count, total, min and max amount, and the names holding the largest amounts. It is
+ * maintained from the individual items, so a replaced or deleted item is taken out of it exactly, and each statistic
+ * is read without going over the items.
+ * <p>
+ * Not thread safe.
+ */
+public class VegetableStats {
+
+  private static final Comparator<NameTotal> RANKING = Comparator.<NameTotal>comparingLong(total -> -total.amount)
+    .thenComparing(total -> total.name);
+
+  private final Map<Long, Item> items = new HashMap<>();
+  /**
+   * The number of items by amount.
+   */
+  private final TreeMap<Integer, Integer> amounts = new TreeMap<>();
+  private final Map<String, NameTotal> names = new HashMap<>();
+  private final TreeSet<NameTotal> ranking = new TreeSet<>(RANKING);
+  private long totalAmount;
+
+  /**
+   * Adds the item, or replaces the one with the same {@code id}.
+   */
+  public void put(JsonObject item) {
+    Integer amount = item.getInteger("amount");
+    put(item.getLong("id"), item.getString("name"), amount == null ? 0 : amount);
+  }
+
+  public void put(long id, String name, int amount) {
+    remove(id);
+    items.put(id, new Item(name, amount));
+    amounts.merge(amount, 1, Integer::sum);
+    totalAmount += amount;
+    rank(name, amount, 1);
+  }
+
+  public void remove(long id) {
+    Item item = items.remove(id);
+    if (item == null) {
+      return;
+    }
+    amounts.compute(item.amount, (amount, count) -> count == 1 ? null : count - 1);
+    totalAmount -= item.amount;
+    rank(item.name, -item.amount, -1);
+  }
+
+  public int count() {
+    return items.size();
+  }
+
+  public long totalAmount() {
+    return totalAmount;
+  }
+
+  /**
+   * @param top the number of names to return, ordered by decreasing total amount
+   */
+  public JsonObject toJson(int top) {
+    JsonArray topNames = new JsonArray();
+    Iterator<NameTotal> it = ranking.iterator();
+    for (int i = 0; i < top && it.hasNext(); i++) {
+      NameTotal total = it.next();
+      topNames.add(new JsonObject()
+        .put("name", total.name)
+        .put("items", total.items)
+        .put("amount", total.amount));
+    }
+    return new JsonObject()
+      .put("count", items.size())
+      .put("totalAmount", totalAmount)
+      .put("minAmount", amounts.isEmpty() ? null : amounts.firstKey())
+      .put("maxAmount", amounts.isEmpty() ? null : amounts.lastKey())
+      .put("top", topNames);
+  }
+
+  private void rank(String name, long amount, int items) {
+    NameTotal total = names.get(name);
+    if (total == null) {
+      total = new NameTotal(name);
+      names.put(name, total);
+    } else {
+      // the ranking is ordered by the total, which is about to change
+      ranking.remove(total);
+    }
+    total.amount += amount;
+    total.items += items;
+    if (total.items == 0) {
+      names.remove(name);
+    } else {
+      ranking.add(total);
+    }
+  }
+
+  private static final class Item {
+    private final String name;
+    private final int amount;
+
+    Item(String name, int amount) {
+      this.name = name;
+      this.amount = amount;
+    }
+  }
+
+  private static final class NameTotal {
+    private final String name;
+    private long amount;
+    private int items;
+
+    NameTotal(String name) {
+      this.name = name;
+    }
+  }
+}
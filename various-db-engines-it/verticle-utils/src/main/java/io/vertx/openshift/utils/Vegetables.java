@@ -0,0 +1,57 @@
+package io.vertx.openshift.utils;
+
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Validation rules shared by the {@link DataStore} implementations.
+ */
+public final class Vegetables {
+
+  private Vegetables() {
+  }
+
+  /**
+   * Checks that an item can be inserted.
+   *
+   * @param item the item to insert
+   * @return the validation error, {@code null} if the item is valid
+   */
+  public static IllegalArgumentException validateCreate(JsonObject item) {
+    if (item == null) {
+      return new IllegalArgumentException("The item must not be null");
+    }
+    if (item.getString("name") == null || item.getString("name").isEmpty()) {
+      return new IllegalArgumentException("The name must not be null or empty");
+    }
+    if (item.getInteger("amount", 0) < 0) {
+      return new IllegalArgumentException("The amount must greater or equal to 0");
+    }
+    if (item.containsKey("id")) {
+      return new IllegalArgumentException("The created item already contains an 'id'");
+    }
+    return null;
+  }
+
+  /**
+   * Checks that the item identified by {@code id} can be replaced by {@code item}.
+   *
+   * @param id   the id of the updated item
+   * @param item the new values
+   * @return the validation error, {@code null} if the item is valid
+   */
+  public static IllegalArgumentException validateUpdate(long id, JsonObject item) {
+    if (item == null) {
+      return new IllegalArgumentException("The item must not be null");
+    }
+    if (item.getString("name") == null || item.getString("name").isEmpty()) {
+      return new IllegalArgumentException("The name must not be null or empty");
+    }
+    if (item.getInteger("amount", 0) < 0) {
+      return new IllegalArgumentException("The amount must greater or equal to 0");
+    }
+    if (item.containsKey("id") && id != item.getInteger("id")) {
+      return new IllegalArgumentException("The 'id' cannot be changed");
+    }
+    return null;
+  }
+}
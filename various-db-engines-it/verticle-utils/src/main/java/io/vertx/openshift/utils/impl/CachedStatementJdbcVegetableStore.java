@@ -0,0 +1,226 @@
+package io.vertx.openshift.utils.impl;
+
+import io.reactivex.Completable;
+import io.reactivex.Single;
+import io.vertx.core.json.JsonObject;
+import io.vertx.openshift.utils.SqlDialect;
+import io.vertx.reactivex.core.Vertx;
+import io.vertx.reactivex.ext.jdbc.JDBCClient;
+import io.vertx.reactivex.ext.sql.SQLConnection;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import static io.vertx.openshift.utils.Vegetables.validateCreate;
+import static io.vertx.openshift.utils.Vegetables.validateUpdate;
+
+/**
+ * {@link JdbcVegetableStore} mode which keeps a fixed number of pooled connections checked out and caches the
+ * prepared INSERT / SELECT_ONE / UPDATE / DELETE statements on each of them, so point operations neither wait for a
+ * connection checkout nor re-parse their SQL. Statements on a connection are executed one at a time on a worker
+ * thread; the operations are spread over the connections round-robin. A connection on which a statement fails with an
+ * {@link SQLException} is given back to the pool, and another one is pinned by the next operation of its slot.
+ * <p>
+ * {@link #readAll()} is inherited and keeps streaming over a regular pooled connection.
+ */
+public class CachedStatementJdbcVegetableStore extends JdbcVegetableStore {
+
+  private final Vertx vertx;
+  private final String[] generatedKeys;
+  private final AtomicReferenceArray<Single<PinnedConnection>> connections;
+  private final AtomicInteger next = new AtomicInteger();
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+
+  /**
+   * @param vertx       the Vert.x instance used to run the statements on worker threads
+   * @param jdbcClient  the client the connections are taken from
+   * @param dialect     the dialect of the database
+   * @param connections how many connections the store keeps checked out, must be positive
+   */
+  public CachedStatementJdbcVegetableStore(Vertx vertx, JDBCClient jdbcClient, SqlDialect dialect, int connections) {
+    super(jdbcClient, dialect);
+    if (connections < 1) {
+      throw new IllegalArgumentException("The number of connections must be positive");
+    }
+    this.vertx = vertx;
+    this.generatedKeys = generatedKeyColumns();
+    this.connections = new AtomicReferenceArray<>(connections);
+  }
+
+  @Override
+  public Single<JsonObject> create(JsonObject item) {
+    IllegalArgumentException invalid = validateCreate(item);
+    if (invalid != null) {
+      return Single.error(invalid);
+    }
+
+    return execute(INSERT, generatedKeys, statement -> {
+      statement.setString(1, item.getString("name"));
+      statement.setObject(2, item.getValue("amount", 0));
+      statement.executeUpdate();
+      try (ResultSet keys = statement.getGeneratedKeys()) {
+        keys.next();
+        return insertedRow(item, JdbcRows.toArray(keys, generatedKeys.length), 0);
+      }
+    });
+  }
+
+  @Override
+  public Single<JsonObject> read(long id) {
+    return execute(SELECT_ONE, null, statement -> {
+      statement.setLong(1, id);
+      try (ResultSet rs = statement.executeQuery()) {
+        if (!rs.next()) {
+          throw new NoSuchElementException("Item '" + id + "' not found");
+        }
+        return toRow(JdbcRows.toArray(rs, SqlDialect.COLUMNS.size()));
+      }
+    });
+  }
+
+  @Override
+  public Completable update(long id, JsonObject item) {
+    IllegalArgumentException invalid = validateUpdate(id, item);
+    if (invalid != null) {
+      return Completable.error(invalid);
+    }
+
+    return execute(UPDATE, null, statement -> {
+      statement.setString(1, item.getString("name"));
+      statement.setObject(2, item.getValue("amount", 0));
+      statement.setLong(3, id);
+      return updated(id, statement.executeUpdate());
+    }).ignoreElement();
+  }
+
+  @Override
+  public Completable delete(long id) {
+    return execute(DELETE, null, statement -> {
+      statement.setLong(1, id);
+      return updated(id, statement.executeUpdate());
+    }).ignoreElement();
+  }
+
+  @Override
+  public JsonObject metrics() {
+    long hitCount = hits.get();
+    long missCount = misses.get();
+    return new JsonObject().put("statementCache", new JsonObject()
+      .put("connections", connections.length())
+      .put("hits", hitCount)
+      .put("misses", missCount)
+      .put("hitRatio", hitCount + missCount == 0 ? 0.0 : (double) hitCount / (hitCount + missCount)));
+  }
+
+  /**
+   * Closes the pinned connections and their statements. The operations still running on them fail.
+   */
+  @Override
+  public void close() {
+    for (int slot = 0; slot < connections.length(); slot++) {
+      Single<PinnedConnection> pinned = connections.getAndSet(slot, null);
+      if (pinned != null) {
+        pinned.subscribe(PinnedConnection::release, err -> {
+          // the checkout failed, there is nothing to release
+        });
+      }
+    }
+  }
+
+  private static int updated(long id, int count) {
+    if (count == 0) {
+      throw new NoSuchElementException("Unknown item '" + id + "'");
+    }
+    return count;
+  }
+
+  /**
+   * @param generatedKeys the columns whose generated values the statement returns, {@code null} for none
+   */
+  private <T> Single<T> execute(String sql, String[] generatedKeys, StatementFunction<T> function) {
+    int slot = Math.floorMod(next.getAndIncrement(), connections.length());
+    Single<PinnedConnection> source = connection(slot);
+    return source
+      // don't keep a failed checkout around, the next operation on this slot retries it
+      .doOnError(err -> connections.compareAndSet(slot, source, null))
+      .flatMap(pinned ->
+        vertx.<T>rxExecuteBlocking(future -> {
+          try {
+            future.complete(pinned.execute(sql, generatedKeys, function));
+          } catch (SQLException e) {
+            // the connection may be broken, or left in a failed state, the next operation on this slot pins another
+            if (connections.compareAndSet(slot, source, null)) {
+              pinned.release();
+            }
+            future.fail(e);
+          } catch (Exception e) {
+            future.fail(e);
+          }
+        }, false).toSingle());
+  }
+
+  private Single<PinnedConnection> connection(int slot) {
+    Single<PinnedConnection> pinned = connections.get(slot);
+    if (pinned == null) {
+      Single<PinnedConnection> created = client.rxGetConnection().map(PinnedConnection::new).cache();
+      pinned = connections.compareAndSet(slot, null, created) ? created : connections.get(slot);
+    }
+    return pinned;
+  }
+
+  @FunctionalInterface
+  private interface StatementFunction<T> {
+    T apply(PreparedStatement statement) throws SQLException;
+  }
+
+  private final class PinnedConnection {
+    private final SQLConnection connection;
+    private final Connection jdbc;
+    private final Map<String, PreparedStatement> statements = new HashMap<>();
+
+    PinnedConnection(SQLConnection connection) {
+      this.connection = connection;
+      this.jdbc = connection.getDelegate().unwrap();
+    }
+
+    synchronized <T> T execute(String sql, String[] generatedKeys, StatementFunction<T> function)
+      throws SQLException {
+      PreparedStatement statement = statements.get(sql);
+      if (statement == null || statement.isClosed()) {
+        misses.incrementAndGet();
+        statement = generatedKeys != null
+          ? jdbc.prepareStatement(sql, generatedKeys)
+          : jdbc.prepareStatement(sql);
+        statements.put(sql, statement);
+      } else {
+        hits.incrementAndGet();
+        statement.clearParameters();
+      }
+      return function.apply(statement);
+    }
+
+    /**
+     * Closes the cached statements, and gives the connection back to the pool.
+     */
+    synchronized void release() {
+      for (PreparedStatement statement : statements.values()) {
+        try {
+          statement.close();
+        } catch (SQLException e) {
+          // the connection is closed anyway
+        }
+      }
+      statements.clear();
+      connection.close();
+    }
+  }
+}
@@ -0,0 +1,63 @@
+package io.vertx.openshift.utils.impl;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+
+/**
+ * Converts rows read from a plain JDBC {@link ResultSet} into JSON, the same way the Vert.x JDBC client does for the
+ * values stored in the vegetables table.
+ */
+final class JdbcRows {
+
+  private JdbcRows() {
+  }
+
+  /**
+   * Reads the first {@code columns} columns of the current row of {@code rs} into a {@link JsonArray}, in column order.
+   * The number of columns is known from the statement, so the metadata of the result set is never read.
+   */
+  static JsonArray toArray(ResultSet rs, int columns) throws SQLException {
+    JsonArray row = new JsonArray(new ArrayList<>(columns));
+    for (int i = 1; i <= columns; i++) {
+      row.add(toJsonValue(rs.getObject(i)));
+    }
+    return row;
+  }
+
+  /**
+   * Maps a JDBC value to a type accepted by {@link JsonObject}.
+   */
+  static Object toJsonValue(Object value) {
+    if (value == null || value instanceof String || value instanceof Boolean
+      || value instanceof Integer || value instanceof Long || value instanceof Double) {
+      return value;
+    }
+    if (value instanceof BigDecimal) {
+      BigDecimal decimal = (BigDecimal) value;
+      if (decimal.scale() <= 0) {
+        try {
+          return decimal.longValueExact();
+        } catch (ArithmeticException e) {
+          return decimal.toString();
+        }
+      }
+      return decimal.doubleValue();
+    }
+    if (value instanceof Float) {
+      return ((Float) value).doubleValue();
+    }
+    if (value instanceof Number) {
+      return ((Number) value).longValue();
+    }
+    if (value instanceof Timestamp) {
+      return ((Timestamp) value).toInstant();
+    }
+    return value.toString();
+  }
+}
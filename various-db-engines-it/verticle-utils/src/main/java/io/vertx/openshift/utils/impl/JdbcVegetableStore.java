@@ -1,16 +1,31 @@
 package io.vertx.openshift.utils.impl;
 
 import io.reactivex.Completable;
+import io.reactivex.Flowable;
 import io.reactivex.Observable;
 import io.reactivex.Single;
+import io.vertx.core.buffer.Buffer;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.sql.ResultSet;
+import io.vertx.ext.sql.SQLOptions;
+import io.vertx.openshift.utils.CompactJson;
 import io.vertx.openshift.utils.DataStore;
+import io.vertx.openshift.utils.SqlDialect;
 import io.vertx.reactivex.ext.jdbc.JDBCClient;
+import io.vertx.reactivex.ext.sql.SQLConnection;
 import io.vertx.reactivex.ext.sql.SQLRowStream;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.function.Function;
+
+import static io.vertx.openshift.utils.Vegetables.validateCreate;
+import static io.vertx.openshift.utils.Vegetables.validateUpdate;
 
 /**
  * @author Martin Spisiak (mspisiak@redhat.com) on 03/10/17.
@@ -19,59 +34,366 @@ public class JdbcVegetableStore implements DataStore {
 
   protected static final String INSERT = "INSERT INTO vegetables (name, amount) VALUES (?, ?)";
 
-  private static final String SELECT_ONE = "SELECT * FROM vegetables WHERE id = ?";
+  private static final String INSERT_WITH_ID = "INSERT INTO vegetables (id, name, amount) VALUES (?, ?, ?)";
+
+  protected static final String SELECT_ONE = "SELECT id, name, amount, version FROM vegetables WHERE id = ?";
 
   private static final String SELECT_ALL = "SELECT * FROM vegetables";
 
-  private static final String UPDATE = "UPDATE vegetables SET name = ?, amount = ? WHERE id = ?";
+  private static final String SELECT_PAGE = "SELECT id, name, amount FROM vegetables WHERE id > ?";
+
+  protected static final String UPDATE = "UPDATE vegetables SET name = ?, amount = ?, version = version + 1 WHERE id = ?";
+
+  protected static final String UPDATE_VERSION = "UPDATE vegetables SET name = ?, amount = ?, version = version + 1 "
+    + "WHERE id = ? AND version = ?";
+
+  protected static final String DELETE = "DELETE FROM vegetables WHERE id = ?";
+
+  private static final String SELECT_TOTALS = "SELECT COUNT(*), SUM(COALESCE(amount, 0)), MIN(COALESCE(amount, 0)), "
+    + "MAX(COALESCE(amount, 0)) FROM vegetables";
+
+  private static final String SELECT_TOP_NAMES = "SELECT name, COUNT(*), SUM(COALESCE(amount, 0)) AS total "
+    + "FROM vegetables GROUP BY name ORDER BY total DESC, name";
 
-  private static final String DELETE = "DELETE FROM vegetables WHERE id = ?";
+  /**
+   * Keeps multi-row INSERTs well below the bind parameter limits of the drivers.
+   */
+  private static final int MAX_ROWS_PER_INSERT = 1000;
+
+  private static final byte[] ID_FIELD = "{\"id\":".getBytes();
+  private static final byte[] NAME_FIELD = ",\"name\":".getBytes();
+  private static final byte[] AMOUNT_FIELD = ",\"amount\":".getBytes();
 
   protected final JDBCClient client;
+  protected final SqlDialect dialect;
+  /**
+   * Asks for the generated keys by column name, so each inserted row contributes the same columns.
+   */
+  private final SQLOptions generatedKeys;
+  /**
+   * The query taking the ids from the sequence of the dialect, once its name is known.
+   */
+  private volatile String nextIds;
 
-  public JdbcVegetableStore(JDBCClient jdbcClient) {
+  public JdbcVegetableStore(JDBCClient jdbcClient, SqlDialect dialect) {
     this.client = jdbcClient;
+    this.dialect = dialect;
+    this.generatedKeys = new SQLOptions().setAutoGeneratedKeysIndexes(new JsonArray(Arrays.asList(generatedKeyColumns())));
+  }
+
+  /**
+   * @return the names of the generated columns of the dialect, as the database knows them
+   */
+  protected String[] generatedKeyColumns() {
+    return dialect.generatedColumns().stream().map(dialect::identifier).toArray(String[]::new);
+  }
+
+  /**
+   * Builds the row inserted for {@code item} from the generated keys returned for it, starting at {@code offset}.
+   */
+  protected JsonObject insertedRow(JsonObject item, JsonArray keys, int offset) {
+    // the values of the columns the driver doesn't return
+    JsonObject row = new JsonObject()
+      .putNull("id")
+      .put("name", item.getString("name"))
+      .put("amount", item.getInteger("amount", 0))
+      .put("version", 1L);
+    List<String> columns = dialect.generatedColumns();
+    for (int i = 0; i < columns.size(); i++) {
+      String column = columns.get(i);
+      // the drivers don't agree on the numeric types of the keys
+      Object value = "name".equals(column) ? keys.getString(offset + i)
+        : "amount".equals(column) ? (Object) keys.getInteger(offset + i) : keys.getLong(offset + i);
+      row.put(column, value);
+    }
+    return row;
   }
 
   @Override
   public Single<JsonObject> create(JsonObject item) {
-    if (item == null) {
-      return Single.error(new IllegalArgumentException("The item must not be null"));
-    }
-    if (item.getString("name") == null || item.getString("name").isEmpty()) {
-      return Single.error(new IllegalArgumentException("The name must not be null or empty"));
-    }
-    if (item.getInteger("amount", 0) < 0) {
-      return Single.error(new IllegalArgumentException("The amount must greater or equal to 0"));
-    }
-    if (item.containsKey("id")) {
-      return Single.error(new IllegalArgumentException("The created item already contains an 'id'"));
+    IllegalArgumentException invalid = validateCreate(item);
+    if (invalid != null) {
+      return Single.error(invalid);
     }
 
     return client.rxGetConnection()
       .flatMap(conn -> {
-        JsonArray params = new JsonArray().add(item.getValue("name")).add(item.getValue("amount", 0));
-        return conn
-          .rxUpdateWithParams(INSERT, params)
-          .map(ur -> item.put("id", ur.getKeys().getLong(0)))
+        conn.setOptions(generatedKeys);
+        return insertRows(conn, Collections.singletonList(item))
+          .map(created -> created.get(0))
           .doAfterTerminate(conn::close);
       });
   }
 
+  /**
+   * Inserts the items with multi-row INSERTs of up to {@value #MAX_ROWS_PER_INSERT} rows, or one by one if the
+   * dialect doesn't support them, the inserted rows are returned in the same round trips. When the dialect gives the
+   * sequence of the ids, the items are inserted with batches of up to {@value #MAX_ROWS_PER_INSERT} rows instead. All
+   * the rows are inserted in one transaction.
+   */
   @Override
-  public Observable<JsonObject> readAll() {
+  public Single<List<JsonObject>> createAll(List<JsonObject> items) {
+    for (JsonObject item : items) {
+      IllegalArgumentException invalid = validateCreate(item);
+      if (invalid != null) {
+        return Single.error(invalid);
+      }
+    }
+    if (items.isEmpty()) {
+      return Single.just(Collections.emptyList());
+    }
+
+    boolean batched = dialect.idSequenceQuery() != null;
+    int rowsPerInsert = batched || dialect.multiRowInsert() ? MAX_ROWS_PER_INSERT : 1;
+    List<List<JsonObject>> chunks = new ArrayList<>();
+    for (int i = 0; i < items.size(); i += rowsPerInsert) {
+      chunks.add(items.subList(i, Math.min(i + rowsPerInsert, items.size())));
+    }
+    return inTransaction(conn -> {
+      conn.setOptions(generatedKeys);
+      return Observable.fromIterable(chunks)
+        .concatMapSingle(chunk -> batched ? insertBatch(conn, chunk) : insertRows(conn, chunk))
+        .collectInto(new ArrayList<JsonObject>(items.size()), List::addAll)
+        .map(created -> (List<JsonObject>) created);
+    });
+  }
+
+  private Single<List<JsonObject>> insertRows(SQLConnection conn, List<JsonObject> items) {
+    StringBuilder sql = new StringBuilder(INSERT);
+    JsonArray params = new JsonArray();
+    for (JsonObject item : items) {
+      if (params.size() > 0) {
+        sql.append(", (?, ?)");
+      }
+      params.add(item.getValue("name")).add(item.getValue("amount", 0));
+    }
+
+    return conn
+      .rxUpdateWithParams(sql.toString(), params)
+      .map(ur -> {
+        JsonArray keys = ur.getKeys();
+        int columns = dialect.generatedColumns().size();
+        if (keys.size() != items.size() * columns) {
+          throw new IllegalStateException("Expected " + items.size() * columns + " generated keys, got " + keys.size());
+        }
+        List<JsonObject> created = new ArrayList<>(items.size());
+        for (int i = 0; i < items.size(); i++) {
+          created.add(insertedRow(items.get(i), keys, i * columns));
+        }
+        return created;
+      });
+  }
+
+  private Single<List<JsonObject>> insertBatch(SQLConnection conn, List<JsonObject> items) {
+    return nextIds(conn, items.size())
+      .flatMap(ids -> {
+        List<JsonArray> params = new ArrayList<>(items.size());
+        List<JsonObject> created = new ArrayList<>(items.size());
+        for (int i = 0; i < items.size(); i++) {
+          JsonObject item = items.get(i);
+          params.add(new JsonArray().add(ids.get(i)).add(item.getValue("name")).add(item.getValue("amount", 0)));
+          created.add(new JsonObject()
+            .put("id", ids.get(i))
+            .put("name", item.getString("name"))
+            .put("amount", item.getInteger("amount", 0))
+            .put("version", 1L));
+        }
+        return conn.rxBatchWithParams(INSERT_WITH_ID, params).map(counts -> created);
+      });
+  }
+
+  /**
+   * Takes {@code count} ids from the sequence of the dialect, looking its name up the first time.
+   */
+  private Single<List<Long>> nextIds(SQLConnection conn, int count) {
+    Single<String> query = nextIds != null
+      ? Single.just(nextIds)
+      : conn.rxQuery(dialect.idSequenceQuery())
+        .map(rs -> {
+          if (rs.getNumRows() == 0) {
+            throw new IllegalStateException("The ids of the vegetables table are not generated by a sequence");
+          }
+          nextIds = dialect.nextIdsQuery(rs.getResults().get(0).getString(0));
+          return nextIds;
+        });
+    return query
+      .flatMap(sql -> conn.rxQueryWithParams(sql, new JsonArray().add(count)))
+      .map(rs -> {
+        List<Long> ids = new ArrayList<>(count);
+        for (JsonArray row : rs.getResults()) {
+          ids.add(row.getLong(0));
+        }
+        if (ids.size() != count) {
+          throw new IllegalStateException("Expected " + count + " ids, got " + ids.size());
+        }
+        return ids;
+      });
+  }
+
+  /**
+   * Updates the items, identified by their {@code id}, with a JDBC batch executed in one transaction.
+   */
+  @Override
+  public Single<List<Integer>> updateAll(List<JsonObject> items) {
+    List<JsonArray> params = new ArrayList<>(items.size());
+    for (JsonObject item : items) {
+      if (item == null || !(item.getValue("id") instanceof Number)) {
+        return Single.error(new IllegalArgumentException("Every item must contain a numeric 'id'"));
+      }
+      long id = item.getLong("id");
+      IllegalArgumentException invalid = validateUpdate(id, item);
+      if (invalid != null) {
+        return Single.error(invalid);
+      }
+      params.add(new JsonArray().add(item.getValue("name")).add(item.getValue("amount", 0)).add(id));
+    }
+    return batchInTransaction(UPDATE, params);
+  }
+
+  /**
+   * Deletes the items with a JDBC batch executed in one transaction.
+   */
+  @Override
+  public Single<List<Integer>> deleteAll(List<Long> ids) {
+    List<JsonArray> params = new ArrayList<>(ids.size());
+    for (Long id : ids) {
+      if (id == null) {
+        return Single.error(new IllegalArgumentException("The ids must not be null"));
+      }
+      params.add(new JsonArray().add(id));
+    }
+    return batchInTransaction(DELETE, params);
+  }
+
+  private Single<List<Integer>> batchInTransaction(String sql, List<JsonArray> params) {
+    if (params.isEmpty()) {
+      return Single.just(Collections.emptyList());
+    }
+    return inTransaction(conn -> conn.rxBatchWithParams(sql, params));
+  }
+
+  /**
+   * Runs {@code work} on a single connection, committing when it succeeds and rolling back when it fails.
+   */
+  protected <T> Single<T> inTransaction(Function<SQLConnection, Single<T>> work) {
     return client.rxGetConnection()
-      .flatMapObservable(conn ->
+      .flatMap(conn ->
+        conn.rxSetAutoCommit(false)
+          .andThen(Single.defer(() -> work.apply(conn)))
+          .flatMap(result -> conn.rxCommit().andThen(Single.just(result)))
+          .onErrorResumeNext(err -> conn.rxRollback().onErrorComplete().andThen(Single.error(err)))
+          .doFinally(conn::close));
+  }
+
+  @Override
+  public Flowable<JsonObject> readAll() {
+    return streamAll().map(JdbcVegetableStore::toItem);
+  }
+
+  /**
+   * Encodes the rows as they come out of the row stream, without building a {@link JsonObject} for each of them.
+   */
+  @Override
+  public Flowable<Buffer> readAllJson() {
+    return CompactJson.array(streamAll(), JdbcVegetableStore::writeItem);
+  }
+
+  private Flowable<JsonArray> streamAll() {
+    return client.rxGetConnection()
+      .flatMapPublisher(conn ->
         conn
           .rxQueryStream(SELECT_ALL)
-          .flatMapObservable(SQLRowStream::toObservable)
-          .doAfterTerminate(conn::close))
-      .map(array ->
-        new JsonObject()
-          .put("id", array.getLong(0))
-          .put("name", array.getString(1))
-          .put("amount", array.getInteger(2))
-      );
+          .flatMapPublisher(SQLRowStream::toFlowable)
+          // also release the connection when the subscriber cancels, e.g. when the client went away
+          .doFinally(conn::close));
+  }
+
+  /**
+   * Seeks past {@code afterId} on the primary key index, so every page costs the same whatever its position.
+   */
+  @Override
+  public Flowable<JsonObject> readPage(long afterId, int limit, JsonObject filter) {
+    if (limit < 1) {
+      return Flowable.error(new IllegalArgumentException("The limit must be positive"));
+    }
+
+    StringBuilder sql = new StringBuilder(SELECT_PAGE);
+    JsonArray params = new JsonArray().add(afterId);
+    if (filter.getString("name") != null) {
+      sql.append(" AND name = ?");
+      params.add(filter.getString("name"));
+    }
+    if (filter.getInteger("minAmount") != null) {
+      sql.append(" AND amount >= ?");
+      params.add(filter.getInteger("minAmount"));
+    }
+    if (filter.getInteger("maxAmount") != null) {
+      sql.append(" AND amount <= ?");
+      params.add(filter.getInteger("maxAmount"));
+    }
+    sql.append(" ORDER BY id").append(dialect.limitClause());
+    params.add(limit);
+
+    return client.rxGetConnection()
+      .flatMapPublisher(conn ->
+        conn
+          .rxQueryStreamWithParams(sql.toString(), params)
+          .flatMapPublisher(SQLRowStream::toFlowable)
+          .doFinally(conn::close))
+      .map(JdbcVegetableStore::toItem);
+  }
+
+  private static void writeItem(Buffer buffer, JsonArray row) {
+    CompactJson.writeValue(buffer.appendBytes(ID_FIELD), row.getValue(0));
+    CompactJson.writeValue(buffer.appendBytes(NAME_FIELD), row.getValue(1));
+    CompactJson.writeValue(buffer.appendBytes(AMOUNT_FIELD), row.getValue(2));
+    buffer.appendByte((byte) '}');
+  }
+
+  private static JsonObject toItem(JsonArray array) {
+    return new JsonObject()
+      .put("id", array.getLong(0))
+      .put("name", array.getString(1))
+      .put("amount", array.getInteger(2));
+  }
+
+  /**
+   * @param array the values of the {@link SqlDialect#COLUMNS}
+   */
+  protected static JsonObject toRow(JsonArray array) {
+    return toItem(array).put("version", array.getLong(3));
+  }
+
+  /**
+   * Computes the statistics with aggregate queries, so the items don't leave the database.
+   */
+  @Override
+  public Single<JsonObject> stats(int top) {
+    return client.rxGetConnection()
+      .flatMap(conn -> conn.rxQuery(SELECT_TOTALS)
+        .flatMap(totals -> {
+          JsonArray row = totals.getResults().get(0);
+          JsonObject stats = new JsonObject()
+            .put("count", row.getInteger(0))
+            .put("totalAmount", row.getValue(1) == null ? 0L : row.getLong(1))
+            .put("minAmount", row.getInteger(2))
+            .put("maxAmount", row.getInteger(3));
+          if (top < 1) {
+            return Single.just(stats.put("top", new JsonArray()));
+          }
+          return conn.rxQueryWithParams(SELECT_TOP_NAMES + dialect.limitClause(), new JsonArray().add(top))
+            .map(names -> {
+              JsonArray topNames = new JsonArray();
+              for (JsonArray name : names.getResults()) {
+                topNames.add(new JsonObject()
+                  .put("name", name.getString(0))
+                  .put("items", name.getInteger(1))
+                  .put("amount", name.getLong(2)));
+              }
+              return stats.put("top", topNames);
+            });
+        })
+        .doAfterTerminate(conn::close));
   }
 
   @Override
@@ -81,12 +403,12 @@ public class JdbcVegetableStore implements DataStore {
         JsonArray param = new JsonArray().add(id);
         return conn
           .rxQueryWithParams(SELECT_ONE, param)
-          .map(ResultSet::getRows)
+          .map(ResultSet::getResults)
           .flatMap(list -> {
             if (list.isEmpty()) {
               return Single.error(new NoSuchElementException("Item '" + id + "' not found"));
             } else {
-              return Single.just(list.get(0));
+              return Single.just(toRow(list.get(0)));
             }
           })
           .doAfterTerminate(conn::close);
@@ -95,17 +417,9 @@ public class JdbcVegetableStore implements DataStore {
 
   @Override
   public Completable update(long id, JsonObject item) {
-    if (item == null) {
-      return Completable.error(new IllegalArgumentException("The item must not be null"));
-    }
-    if (item.getString("name") == null || item.getString("name").isEmpty()) {
-      return Completable.error(new IllegalArgumentException("The name must not be null or empty"));
-    }
-    if (item.getInteger("amount", 0) < 0) {
-      return Completable.error(new IllegalArgumentException("The amount must greater or equal to 0"));
-    }
-    if (item.containsKey("id") && id != item.getInteger("id")) {
-      return Completable.error(new IllegalArgumentException("The 'id' cannot be changed"));
+    IllegalArgumentException invalid = validateUpdate(id, item);
+    if (invalid != null) {
+      return Completable.error(invalid);
     }
 
     return client.rxGetConnection()
@@ -122,6 +436,58 @@ public class JdbcVegetableStore implements DataStore {
       });
   }
 
+  /**
+   * Checks the version in the WHERE clause of the UPDATE, so no row is read beforehand.
+   */
+  @Override
+  public Single<Long> update(long id, JsonObject item, long expectedVersion) {
+    IllegalArgumentException invalid = validateUpdate(id, item);
+    if (invalid != null) {
+      return Single.error(invalid);
+    }
+
+    String returning = dialect.returningClause("version");
+    return client.rxGetConnection()
+      .flatMap(conn -> {
+        JsonArray params = new JsonArray().add(item.getValue("name")).add(item.getValue("amount", 0)).add(id)
+          .add(expectedVersion);
+        Single<Long> version = returning == null
+          ? conn.rxUpdateWithParams(UPDATE_VERSION, params).map(up -> up.getUpdated() == 0 ? 0L : expectedVersion + 1)
+          // the version as set by the database
+          : conn.rxQueryWithParams(UPDATE_VERSION + returning, params)
+            .map(rs -> rs.getNumRows() == 0 ? 0L : rs.getResults().get(0).getLong(0));
+        return version
+          .map(updated -> {
+            if (updated == 0) {
+              throw new ConcurrentModificationException("Item '" + id + "' is not at version " + expectedVersion);
+            }
+            return updated;
+          })
+          .doAfterTerminate(conn::close);
+      });
+  }
+
+  @Override
+  public Completable upsert(long id, JsonObject item) {
+    IllegalArgumentException invalid = validateUpdate(id, item);
+    if (invalid != null) {
+      return Completable.error(invalid);
+    }
+
+    return client.rxGetConnection()
+      .flatMapCompletable(conn -> {
+        JsonArray params = new JsonArray().add(id).add(item.getValue("name")).add(item.getValue("amount", 0));
+        Completable upsert = conn.rxUpdateWithParams(dialect.upsert(), params).ignoreElement();
+        String advance = dialect.advanceIdSequence();
+        if (advance != null) {
+          // a call, the statement may be a query as well as a block returning nothing
+          upsert = upsert.andThen(conn.rxCallWithParams(advance, new JsonArray().add(id), new JsonArray())
+            .ignoreElement());
+        }
+        return upsert.doAfterTerminate(conn::close);
+      });
+  }
+
   @Override
   public Completable delete(long id) {
     return client.rxGetConnection()
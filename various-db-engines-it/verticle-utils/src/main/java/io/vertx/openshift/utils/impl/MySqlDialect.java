@@ -0,0 +1,30 @@
+package io.vertx.openshift.utils.impl;
+
+import io.vertx.openshift.utils.SqlDialect;
+
+/**
+ * MySQL and MariaDB, whose drivers only return the auto-increment id as generated key.
+ */
+public class MySqlDialect implements SqlDialect {
+
+  @Override
+  public boolean supports(String jdbcUrl) {
+    return jdbcUrl.startsWith("jdbc:mysql:") || jdbcUrl.startsWith("jdbc:mariadb:");
+  }
+
+  @Override
+  public boolean upperCaseIdentifiers() {
+    return false;
+  }
+
+  @Override
+  public String limitClause() {
+    return " LIMIT ?";
+  }
+
+  @Override
+  public String upsert() {
+    return "INSERT INTO vegetables (id, name, amount) VALUES (?, ?, ?) ON DUPLICATE KEY UPDATE "
+      + "name = VALUES(name), amount = VALUES(amount), version = version + 1";
+  }
+}
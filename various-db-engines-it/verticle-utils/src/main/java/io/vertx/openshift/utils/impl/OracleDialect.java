@@ -0,0 +1,69 @@
+package io.vertx.openshift.utils.impl;
+
+import io.vertx.openshift.utils.SqlDialect;
+
+import java.util.List;
+
+/**
+ * The driver returns the generated keys with a RETURNING INTO clause when they are requested by column name,
+ * otherwise it only returns the ROWID. It doesn't return them for a batch, so the ids of the rows inserted together
+ * are taken from the identity sequence first, and the rows are bound as arrays by the batch.
+ */
+public class OracleDialect implements SqlDialect {
+
+  @Override
+  public boolean supports(String jdbcUrl) {
+    return jdbcUrl.startsWith("jdbc:oracle:");
+  }
+
+  @Override
+  public List<String> generatedColumns() {
+    return COLUMNS;
+  }
+
+  @Override
+  public boolean multiRowInsert() {
+    return false;
+  }
+
+  @Override
+  public String idSequenceQuery() {
+    return "SELECT sequence_name FROM user_tab_identity_cols WHERE table_name = 'VEGETABLES' AND column_name = 'ID'";
+  }
+
+  @Override
+  public String nextIdsQuery(String sequence) {
+    return "SELECT \"" + sequence + "\".NEXTVAL FROM dual CONNECT BY LEVEL <= ?";
+  }
+
+  /**
+   * Takes the next id, and restarts the identity after the highest id of the table if the given one isn't below it.
+   * The restart is DDL, it commits and locks the table, but it only runs when an id ahead of the identity is inserted.
+   */
+  @Override
+  public String advanceIdSequence() {
+    return "DECLARE\n"
+      + "  inserted NUMBER := ?;\n"
+      + "  identity_sequence VARCHAR2(128);\n"
+      + "  next_id NUMBER;\n"
+      + "BEGIN\n"
+      + "  SELECT sequence_name INTO identity_sequence FROM user_tab_identity_cols "
+      + "WHERE table_name = 'VEGETABLES' AND column_name = 'ID';\n"
+      + "  EXECUTE IMMEDIATE 'SELECT \"' || identity_sequence || '\".NEXTVAL FROM dual' INTO next_id;\n"
+      + "  IF next_id <= inserted THEN\n"
+      + "    EXECUTE IMMEDIATE 'ALTER TABLE vegetables MODIFY (id GENERATED BY DEFAULT AS IDENTITY "
+      + "(START WITH LIMIT VALUE))';\n"
+      + "  END IF;\n"
+      + "END;";
+  }
+
+  /**
+   * Oracle has no BIGINT type, and types the parameters of the MERGE source without casts.
+   */
+  @Override
+  public String upsert() {
+    return "MERGE INTO vegetables v USING (SELECT ? AS id, ? AS name, ? AS amount FROM dual) s ON (v.id = s.id) "
+      + "WHEN MATCHED THEN UPDATE SET v.name = s.name, v.amount = s.amount, v.version = v.version + 1 "
+      + "WHEN NOT MATCHED THEN INSERT (id, name, amount) VALUES (s.id, s.name, s.amount)";
+  }
+}
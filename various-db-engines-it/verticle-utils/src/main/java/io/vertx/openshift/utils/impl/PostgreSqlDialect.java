@@ -0,0 +1,52 @@
+package io.vertx.openshift.utils.impl;
+
+import io.vertx.openshift.utils.SqlDialect;
+
+import java.util.List;
+
+/**
+ * The driver returns the generated keys with a RETURNING clause, so they hold the whole inserted row.
+ */
+public class PostgreSqlDialect implements SqlDialect {
+
+  @Override
+  public boolean supports(String jdbcUrl) {
+    return jdbcUrl.startsWith("jdbc:postgresql:");
+  }
+
+  @Override
+  public List<String> generatedColumns() {
+    return COLUMNS;
+  }
+
+  @Override
+  public boolean upperCaseIdentifiers() {
+    return false;
+  }
+
+  @Override
+  public String returningClause(String columns) {
+    return " RETURNING " + columns;
+  }
+
+  @Override
+  public String limitClause() {
+    return " LIMIT ?";
+  }
+
+  /**
+   * Only moves the sequence SERIAL created for the id forward, so that the ids already taken by other transactions
+   * aren't given again.
+   */
+  @Override
+  public String advanceIdSequence() {
+    return "SELECT setval('vegetables_id_seq', p.id) FROM (SELECT CAST(? AS BIGINT) AS id) p, vegetables_id_seq s "
+      + "WHERE s.last_value < p.id OR (NOT s.is_called AND s.last_value = p.id)";
+  }
+
+  @Override
+  public String upsert() {
+    return "INSERT INTO vegetables (id, name, amount) VALUES (?, ?, ?) ON CONFLICT (id) DO UPDATE "
+      + "SET name = EXCLUDED.name, amount = EXCLUDED.amount, version = vegetables.version + 1";
+  }
+}
@@ -0,0 +1,123 @@
+package io.vertx.openshift.utils;
+
+import io.vertx.core.json.JsonObject;
+import io.vertx.reactivex.core.Vertx;
+import io.vertx.reactivex.core.eventbus.MessageConsumer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ChangeFeedDataStoreTest {
+
+  private static final String ADDRESS = "vegetables.changes";
+
+  private Vertx vertx;
+  private ChangeFeedDataStore store;
+
+  @Before
+  public void setUp() {
+    vertx = Vertx.vertx();
+    store = new ChangeFeedDataStore(vertx, new InMemoryDataStore(), ADDRESS, 3);
+  }
+
+  @After
+  public void tearDown() {
+    vertx.close();
+  }
+
+  @Test
+  public void testEmptyBacklog() {
+    assertEquals(Collections.emptyList(), store.since(0));
+    // an event this store never published, e.g. one of a previous instance
+    assertNull(store.since(1));
+  }
+
+  @Test
+  public void testSinceTheKeptEvents() {
+    create(2);
+
+    assertEquals(Arrays.asList(1L, 2L), seqs(store.since(0)));
+    assertEquals(Collections.singletonList(2L), seqs(store.since(1)));
+    assertEquals(Collections.emptyList(), seqs(store.since(2)));
+    assertNull(store.since(3));
+  }
+
+  @Test
+  public void testSinceARolledOverBacklog() {
+    create(5);
+
+    // 3, 4 and 5 are kept
+    assertEquals(Arrays.asList(3L, 4L, 5L), seqs(store.since(2)));
+    assertNull(store.since(1));
+    assertNull(store.since(0));
+    assertNull(store.since(6));
+  }
+
+  @Test
+  public void testSubscribeHandlesEachEventOnce() throws InterruptedException {
+    create(3);
+    List<Long> handled = new CopyOnWriteArrayList<>();
+    MessageConsumer<JsonObject> consumer = store.subscribe(1L, event -> handled.add(event.getLong("seq")));
+    // the replay is done by the time subscribe returns
+    assertEquals(Arrays.asList(2L, 3L), handled);
+
+    // delivered again by the event bus, e.g. published while the events were replayed
+    vertx.eventBus().publish(ADDRESS, new JsonObject().put("seq", 3L).put("op", ChangeFeedDataStore.CREATE));
+    create(1);
+    awaitSize(handled, 3);
+
+    assertEquals(Arrays.asList(2L, 3L, 4L), handled);
+    consumer.unregister();
+  }
+
+  @Test
+  public void testSubscribeToTheNewEventsOnly() throws InterruptedException {
+    create(2);
+    List<Long> handled = new CopyOnWriteArrayList<>();
+    store.subscribe(null, event -> handled.add(event.getLong("seq")));
+    create(1);
+    awaitSize(handled, 1);
+
+    assertEquals(Collections.singletonList(3L), handled);
+  }
+
+  @Test
+  public void testSubscribeToLostEvents() {
+    create(5);
+
+    assertNull(store.subscribe(1L, event -> {
+      throw new AssertionError("No event is handled");
+    }));
+  }
+
+  private void create(int items) {
+    for (int i = 0; i < items; i++) {
+      store.create(new JsonObject().put("name", "Carrots").put("amount", i)).blockingGet();
+    }
+  }
+
+  private static List<Long> seqs(List<JsonObject> events) {
+    List<Long> seqs = new ArrayList<>();
+    events.forEach(event -> seqs.add(event.getLong("seq")));
+    return seqs;
+  }
+
+  /**
+   * Waits for the event bus to deliver the events, and a bit longer in case it delivers more than expected.
+   */
+  private static void awaitSize(List<Long> handled, int size) throws InterruptedException {
+    for (int i = 0; i < 50 && handled.size() < size; i++) {
+      Thread.sleep(100);
+    }
+    Thread.sleep(200);
+  }
+}
@@ -0,0 +1,77 @@
+package io.vertx.openshift.utils;
+
+import io.reactivex.Flowable;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class CompactJsonTest {
+
+  @Test
+  public void testEncodesLikeJsonObject() {
+    JsonObject object = new JsonObject()
+      .put("id", Long.MIN_VALUE)
+      .put("zero", 0)
+      .put("negative", -42)
+      .put("name", "quote \" backslash \\ tab \t newline \n bell \u0007 é € 🥕")
+      .put("amount", Integer.MAX_VALUE)
+      .put("ratio", 0.25)
+      .put("available", true)
+      .putNull("missing")
+      .put("tags", new JsonArray().add("a").add(1).add(new JsonObject().put("nested", false)));
+
+    Buffer buffer = CompactJson.writeObject(Buffer.buffer(), object);
+
+    assertEquals(object.encode(), buffer.toString());
+    assertEquals(object, buffer.toJsonObject());
+  }
+
+  @Test
+  public void testWritesNonFiniteNumbersAsNull() {
+    JsonArray numbers = new JsonArray()
+      .add(Double.NaN)
+      .add(Double.POSITIVE_INFINITY)
+      .add(Double.NEGATIVE_INFINITY)
+      .add(Float.NaN)
+      .add(1.5);
+
+    Buffer buffer = CompactJson.writeArray(Buffer.buffer(), numbers);
+
+    assertEquals("[null,null,null,null,1.5]", buffer.toString());
+    assertEquals(5, buffer.toJsonArray().size());
+  }
+
+  @Test
+  public void testStreamsArrayInChunks() {
+    List<JsonObject> items = new ArrayList<>();
+    for (int i = 0; i < CompactJson.ROWS_PER_CHUNK * 2 + 1; i++) {
+      items.add(new JsonObject().put("id", i));
+    }
+
+    List<Buffer> chunks = CompactJson.array(Flowable.fromIterable(items), CompactJson::writeObject)
+      .toList()
+      .blockingGet();
+
+    // two full chunks, the remaining row and the closing bracket
+    assertEquals(4, chunks.size());
+    Buffer all = Buffer.buffer();
+    chunks.forEach(all::appendBuffer);
+    assertEquals(new JsonArray(items), all.toJsonArray());
+  }
+
+  @Test
+  public void testStreamsEmptyArray() {
+    List<Buffer> chunks = CompactJson.array(Flowable.<JsonObject>empty(), CompactJson::writeObject)
+      .toList()
+      .blockingGet();
+
+    assertEquals(1, chunks.size());
+    assertEquals("[]", chunks.get(0).toString());
+  }
+}
@@ -0,0 +1,63 @@
+package io.vertx.openshift.utils;
+
+import io.vertx.core.json.JsonObject;
+import io.vertx.reactivex.core.Vertx;
+import io.vertx.reactivex.ext.jdbc.JDBCClient;
+import io.vertx.reactivex.ext.sql.SQLConnection;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+
+public class ConnectionPoolTest {
+
+  private static final JsonObject CONFIG = H2Database.config("pool");
+
+  private Vertx vertx;
+
+  @Before
+  public void setUp() {
+    vertx = Vertx.vertx();
+  }
+
+  @After
+  public void tearDown() {
+    vertx.close();
+  }
+
+  @Test
+  public void testTracksConnectionsOfEveryProvider() throws Exception {
+    for (String provider : Arrays.asList("agroal", "hikari", "c3p0")) {
+      ConnectionPool pool = ConnectionPool.create(CONFIG, provider, 4, 1, 5000, 60000);
+      try {
+        JDBCClient client = pool.client(vertx);
+        SQLConnection first = client.rxGetConnection().blockingGet();
+        SQLConnection second = client.rxGetConnection().blockingGet();
+
+        JsonObject metrics = pool.metrics();
+        assertEquals(provider, metrics.getString("provider"));
+        assertEquals(provider, 2, (int) metrics.getInteger("active"));
+        assertEquals(provider, 0, (int) metrics.getInteger("waiters"));
+        assertEquals(provider, 2, (long) metrics.getLong("acquired"));
+        long bucketed = metrics.getJsonObject("acquisitionTimeUs").getJsonArray("buckets").stream()
+          .mapToLong(bucket -> ((JsonObject) bucket).getLong("count"))
+          .sum();
+        assertEquals(provider, 2, bucketed);
+
+        first.rxClose().blockingAwait();
+        second.rxClose().blockingAwait();
+        assertEquals(provider, 0, (int) pool.metrics().getInteger("active"));
+      } finally {
+        pool.close();
+      }
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRejectsUnknownProvider() throws Exception {
+    ConnectionPool.create(CONFIG, "dbcp", 4, 0, 5000, 60000);
+  }
+}
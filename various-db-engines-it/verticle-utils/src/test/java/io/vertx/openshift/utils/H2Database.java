@@ -0,0 +1,78 @@
+package io.vertx.openshift.utils;
+
+import io.vertx.core.json.JsonObject;
+import io.vertx.reactivex.core.Vertx;
+import io.vertx.reactivex.ext.jdbc.JDBCClient;
+
+import java.sql.SQLException;
+
+/**
+ * An in-memory H2 database reached through an agroal {@link ConnectionPool}, as the verticles reach theirs.
+ */
+public class H2Database {
+
+  public static final String CREATE_VEGETABLES = "CREATE TABLE vegetables(id BIGINT AUTO_INCREMENT PRIMARY KEY, "
+    + "name VARCHAR(40) NOT NULL, amount INT, version BIGINT NOT NULL DEFAULT 1)";
+
+  private final JsonObject config;
+  private final ConnectionPool pool;
+  private final JDBCClient client;
+
+  /**
+   * @param name the name of the database, the tests using the same name share its content
+   */
+  public H2Database(Vertx vertx, String name) throws SQLException {
+    config = config(name);
+    pool = ConnectionPool.create(config, "agroal", 4, 0, 5000, 60000);
+    client = pool.client(vertx);
+  }
+
+  /**
+   * @return the connection configuration of the database {@code name}, which is kept until the JVM exits
+   */
+  public static JsonObject config(String name) {
+    return new JsonObject()
+      .put("jdbcUrl", "jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1")
+      .put("driverClassName", "org.h2.Driver")
+      .put("principal", "sa")
+      .put("credential", "");
+  }
+
+  public ConnectionPool pool() {
+    return pool;
+  }
+
+  public JDBCClient client() {
+    return client;
+  }
+
+  public SqlDialect dialect() {
+    return SqlDialect.forJdbcUrl(config.getString("jdbcUrl"));
+  }
+
+  /**
+   * Drops the vegetables table and creates it empty.
+   */
+  public void createVegetables() {
+    client.rxUpdate("DROP TABLE IF EXISTS vegetables")
+      .flatMap(dropped -> client.rxUpdate(CREATE_VEGETABLES))
+      .blockingGet();
+  }
+
+  /**
+   * Waits up to 5 seconds for the connections to be given back, the stores close them after completing.
+   */
+  public void awaitReleased() throws InterruptedException {
+    for (int i = 0; i < 50 && pool.metrics().getInteger("active") != 0; i++) {
+      Thread.sleep(100);
+    }
+  }
+
+  /**
+   * Closes the pool once the connections are given back, agroal fails to take them back after.
+   */
+  public void close() throws SQLException, InterruptedException {
+    awaitReleased();
+    pool.close();
+  }
+}
@@ -0,0 +1,116 @@
+package io.vertx.openshift.utils;
+
+import io.reactivex.Completable;
+import io.reactivex.Flowable;
+import io.reactivex.Single;
+import io.reactivex.processors.PublishProcessor;
+import io.vertx.core.json.JsonObject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+
+/**
+ * {@link DataStore} keeping the items in a map, for the tests of the decorators. {@link #hold()} keeps the next
+ * {@link #readAll()} streams open after their last item, until {@link #release()}, so that the writes made while a
+ * scan runs can be tested.
+ */
+class InMemoryDataStore implements DataStore {
+
+  private final TreeMap<Long, JsonObject> items = new TreeMap<>();
+  private long lastId;
+  private PublishProcessor<JsonObject> held;
+
+  synchronized void hold() {
+    held = PublishProcessor.create();
+  }
+
+  void release() {
+    PublishProcessor<JsonObject> released;
+    synchronized (this) {
+      released = held;
+      held = null;
+    }
+    released.onComplete();
+  }
+
+  @Override
+  public synchronized Single<JsonObject> create(JsonObject item) {
+    JsonObject created = item.copy().put("id", ++lastId);
+    items.put(lastId, created);
+    return Single.just(created.copy());
+  }
+
+  @Override
+  public Flowable<JsonObject> readAll() {
+    return Flowable.defer(() -> {
+      List<JsonObject> snapshot = new ArrayList<>();
+      PublishProcessor<JsonObject> end;
+      synchronized (this) {
+        items.values().forEach(item -> snapshot.add(item.copy()));
+        end = held;
+      }
+      Flowable<JsonObject> all = Flowable.fromIterable(snapshot);
+      return end == null ? all : all.concatWith(end);
+    });
+  }
+
+  @Override
+  public synchronized Flowable<JsonObject> readPage(long afterId, int limit, JsonObject filter) {
+    List<JsonObject> page = new ArrayList<>();
+    items.tailMap(afterId, false).values().stream().limit(limit).forEach(item -> page.add(item.copy()));
+    return Flowable.fromIterable(page);
+  }
+
+  @Override
+  public synchronized Single<JsonObject> read(long id) {
+    JsonObject item = items.get(id);
+    return item == null
+      ? Single.error(new NoSuchElementException("Item '" + id + "' not found"))
+      : Single.just(item.copy());
+  }
+
+  @Override
+  public synchronized Completable update(long id, JsonObject item) {
+    if (!items.containsKey(id)) {
+      return Completable.error(new NoSuchElementException("Unknown item '" + id + "'"));
+    }
+    items.put(id, item.copy().put("id", id));
+    return Completable.complete();
+  }
+
+  @Override
+  public synchronized Completable upsert(long id, JsonObject item) {
+    items.put(id, item.copy().put("id", id));
+    return Completable.complete();
+  }
+
+  @Override
+  public synchronized Completable delete(long id) {
+    if (items.remove(id) == null) {
+      return Completable.error(new NoSuchElementException("Unknown item '" + id + "'"));
+    }
+    return Completable.complete();
+  }
+
+  @Override
+  public synchronized Single<List<Integer>> updateAll(List<JsonObject> items) {
+    List<Integer> counts = new ArrayList<>(items.size());
+    for (JsonObject item : items) {
+      long id = item.getLong("id");
+      counts.add(this.items.containsKey(id) ? 1 : 0);
+      this.items.computeIfPresent(id, (key, previous) -> item.copy());
+    }
+    return Single.just(counts);
+  }
+
+  @Override
+  public synchronized Single<List<Integer>> deleteAll(List<Long> ids) {
+    List<Integer> counts = new ArrayList<>(ids.size());
+    for (Long id : ids) {
+      counts.add(items.remove(id) == null ? 0 : 1);
+    }
+    return Single.just(counts);
+  }
+}
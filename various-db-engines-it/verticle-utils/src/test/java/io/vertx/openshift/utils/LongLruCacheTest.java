@@ -0,0 +1,80 @@
+package io.vertx.openshift.utils;
+
+import org.junit.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class LongLruCacheTest {
+
+  @Test
+  public void testEvictsLeastRecentlyUsed() {
+    LongLruCache<String> cache = new LongLruCache<>(2, 60_000);
+    cache.put(1, "one");
+    cache.put(2, "two");
+    assertEquals("one", cache.get(1));
+    cache.put(3, "three");
+
+    assertNull(cache.get(2));
+    assertEquals("one", cache.get(1));
+    assertEquals("three", cache.get(3));
+    assertEquals(1, cache.evictions());
+    assertEquals(2, cache.size());
+  }
+
+  @Test
+  public void testInvalidate() {
+    LongLruCache<String> cache = new LongLruCache<>(4, 60_000);
+    cache.put(1, "one");
+    cache.put(2, "two");
+    cache.invalidate(1);
+
+    assertNull(cache.get(1));
+    assertEquals("two", cache.get(2));
+    assertEquals(1, cache.size());
+  }
+
+  @Test
+  public void testExpiration() throws InterruptedException {
+    LongLruCache<String> cache = new LongLruCache<>(4, 1);
+    cache.put(1, "one");
+    Thread.sleep(5);
+
+    assertNull(cache.get(1));
+    assertEquals(1, cache.expirations());
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void testBehavesLikeAnAccessOrderedMap() {
+    int capacity = 64;
+    LongLruCache<Long> cache = new LongLruCache<>(capacity, 60_000);
+    Map<Long, Long> reference = new LinkedHashMap<Long, Long>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Long, Long> eldest) {
+        return size() > capacity;
+      }
+    };
+    Random random = new Random(42);
+    for (int i = 0; i < 100_000; i++) {
+      long key = random.nextInt(256);
+      switch (random.nextInt(3)) {
+        case 0:
+          cache.put(key, key * 7);
+          reference.put(key, key * 7);
+          break;
+        case 1:
+          assertEquals(reference.get(key), cache.get(key));
+          break;
+        default:
+          cache.invalidate(key);
+          reference.remove(key);
+      }
+      assertEquals(reference.size(), cache.size());
+    }
+  }
+}
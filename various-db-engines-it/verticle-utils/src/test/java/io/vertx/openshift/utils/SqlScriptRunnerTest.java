@@ -0,0 +1,74 @@
+package io.vertx.openshift.utils;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.reactivex.core.Vertx;
+import io.vertx.reactivex.ext.jdbc.JDBCClient;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class SqlScriptRunnerTest {
+
+  private Vertx vertx;
+  private H2Database database;
+  private JDBCClient client;
+
+  @Before
+  public void setUp() throws Exception {
+    vertx = Vertx.vertx();
+    database = new H2Database(vertx, "script");
+    client = database.client();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    database.close();
+    vertx.close();
+  }
+
+  @Test
+  public void testRunsPhasesInOrder() {
+    JsonObject report = new SqlScriptRunner(client, 4, 2).run(
+      "DROP TABLE IF EXISTS fruits; DROP TABLE IF EXISTS vegetables;\n" +
+        "CREATE TABLE fruits (id INT PRIMARY KEY, name VARCHAR(40));\n" +
+        "CREATE TABLE vegetables (id INT PRIMARY KEY, name VARCHAR(40));\n" +
+        "INSERT INTO fruits VALUES (1, 'Apples; red');\n" +
+        "INSERT INTO vegetables VALUES (1, 'Carrots');\n" +
+        "INSERT INTO vegetables VALUES (2, 'Onions');\n" +
+        "SET @dummy = 1;")
+      .blockingGet();
+
+    assertEquals(8, (int) report.getInteger("statements"));
+    JsonArray phases = report.getJsonArray("phases");
+    assertEquals(3, phases.size());
+    assertEquals("ddl", phases.getJsonObject(0).getString("kind"));
+    assertEquals(2, (int) phases.getJsonObject(0).getInteger("groups"));
+    assertEquals("dml", phases.getJsonObject(1).getString("kind"));
+    assertEquals(2, (int) phases.getJsonObject(1).getInteger("batches"));
+    assertEquals("other", phases.getJsonObject(2).getString("kind"));
+    assertEquals(3, count("SELECT (SELECT COUNT(*) FROM fruits) + (SELECT COUNT(*) FROM vegetables)"));
+    assertEquals(1, count("SELECT COUNT(*) FROM fruits WHERE name = 'Apples; red'"));
+  }
+
+  @Test
+  public void testRollsBackFailedDml() {
+    new SqlScriptRunner(client, 4, 100).run(
+      "DROP TABLE IF EXISTS herbs; CREATE TABLE herbs (id INT PRIMARY KEY)").blockingGet();
+    try {
+      new SqlScriptRunner(client, 4, 100).run(
+        "INSERT INTO herbs VALUES (1); INSERT INTO herbs VALUES (1)").blockingGet();
+      fail("The duplicate key must fail the script");
+    } catch (RuntimeException expected) {
+      // the first insert is rolled back with the second one
+    }
+    assertEquals(0, count("SELECT COUNT(*) FROM herbs"));
+  }
+
+  private int count(String query) {
+    return client.rxQuerySingle(query).blockingGet().getInteger(0);
+  }
+}
@@ -0,0 +1,79 @@
+package io.vertx.openshift.utils;
+
+import io.vertx.openshift.utils.SqlScript.Kind;
+import io.vertx.openshift.utils.SqlScript.Statement;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+
+public class SqlScriptTest {
+
+  @Test
+  public void testSplitsOnUnquotedSemicolons() {
+    List<Statement> statements = SqlScript.parse(
+      "-- seed; data\n" +
+        "CREATE TABLE \"odd;name\" (id INT); /* a; comment */\n" +
+        "INSERT INTO t (name) VALUES ('it''s; here');\n" +
+        "insert into t (name) values ('trailing')");
+
+    assertEquals(Arrays.asList(
+      "-- seed; data\nCREATE TABLE \"odd;name\" (id INT)",
+      "/* a; comment */\nINSERT INTO t (name) VALUES ('it''s; here')",
+      "insert into t (name) values ('trailing')"),
+      sql(statements));
+    assertEquals(Arrays.asList(Kind.DDL, Kind.DML, Kind.DML), kinds(statements));
+    assertEquals(new HashSet<>(Arrays.asList("odd;name")), statements.get(0).objects());
+  }
+
+  @Test
+  public void testKeepsProcedureBodies() {
+    List<Statement> statements = SqlScript.parse(
+      "CREATE FUNCTION pg() RETURNS trigger AS $body$ BEGIN RETURN NEW; END; $body$ LANGUAGE plpgsql;\n" +
+        "CREATE OR REPLACE PROCEDURE ora AS\n  total NUMBER;\nBEGIN\n  DELETE FROM t;\nEND;\n/\n" +
+        "DELIMITER //\n" +
+        "CREATE PROCEDURE my() BEGIN DELETE FROM t; END//\n" +
+        "DELIMITER ;\n" +
+        "BEGIN;\n" +
+        "DELETE FROM t;\n" +
+        "COMMIT;");
+
+    assertEquals(Arrays.asList(
+      "CREATE FUNCTION pg() RETURNS trigger AS $body$ BEGIN RETURN NEW; END; $body$ LANGUAGE plpgsql",
+      "CREATE OR REPLACE PROCEDURE ora AS\n  total NUMBER;\nBEGIN\n  DELETE FROM t;\nEND;",
+      "CREATE PROCEDURE my() BEGIN DELETE FROM t; END",
+      "BEGIN",
+      "DELETE FROM t",
+      "COMMIT"),
+      sql(statements));
+    assertEquals(Arrays.asList(Kind.OTHER, Kind.OTHER, Kind.OTHER, Kind.TRANSACTION, Kind.DML, Kind.TRANSACTION),
+      kinds(statements));
+  }
+
+  @Test
+  public void testGroupsDdlByObject() {
+    List<Statement> statements = SqlScript.parse(
+      "CREATE TABLE IF NOT EXISTS a (id INT PRIMARY KEY);\n" +
+        "CREATE TABLE b (id INT);\n" +
+        "CREATE TABLE c (a_id INT REFERENCES a (id));\n" +
+        "CREATE INDEX b_id ON b (id);\n");
+
+    List<List<Statement>> groups = SqlScriptRunner.independentGroups(statements);
+
+    assertEquals(2, groups.size());
+    assertEquals(Arrays.asList(statements.get(0), statements.get(2)), groups.get(0));
+    assertEquals(Arrays.asList(statements.get(1), statements.get(3)), groups.get(1));
+  }
+
+  private static List<String> sql(List<Statement> statements) {
+    return statements.stream().map(Statement::sql).collect(Collectors.toList());
+  }
+
+  private static List<Kind> kinds(List<Statement> statements) {
+    return statements.stream().map(Statement::kind).collect(Collectors.toList());
+  }
+}
@@ -0,0 +1,77 @@
+package io.vertx.openshift.utils;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.reactivex.core.Vertx;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class StatsDataStoreTest {
+
+  private static final long NEVER = 3_600_000;
+
+  private Vertx vertx;
+  private InMemoryDataStore items;
+
+  @Before
+  public void setUp() {
+    vertx = Vertx.vertx();
+    items = new InMemoryDataStore();
+  }
+
+  @After
+  public void tearDown() {
+    vertx.close();
+  }
+
+  @Test
+  public void testReplaysTheWritesMadeDuringARebuild() {
+    long carrots = items.create(new JsonObject().put("name", "Carrots").put("amount", 10)).blockingGet().getLong("id");
+    long leeks = items.create(new JsonObject().put("name", "Leeks").put("amount", 5)).blockingGet().getLong("id");
+    items.hold();
+    // the first rebuild has read the items, and waits for the end of the scan
+    StatsDataStore store = new StatsDataStore(vertx, items, NEVER);
+
+    store.create(new JsonObject().put("name", "Onions").put("amount", 30)).blockingGet();
+    store.update(carrots, new JsonObject().put("name", "Carrots").put("amount", 12)).blockingAwait();
+    store.delete(leeks).blockingAwait();
+    items.release();
+
+    JsonObject stats = store.stats(1).blockingGet();
+    assertEquals(2, (int) stats.getInteger("count"));
+    assertEquals(42, (long) stats.getLong("totalAmount"));
+    assertEquals(12, (int) stats.getInteger("minAmount"));
+    assertEquals(new JsonArray().add(new JsonObject().put("name", "Onions").put("items", 1).put("amount", 30L)),
+      stats.getJsonArray("top"));
+    assertEquals(1L, (long) store.metrics().getJsonObject("stats").getLong("reconciliations"));
+  }
+
+  @Test
+  public void testRebuildCatchesUpWithTheWritesMadeElsewhere() {
+    StatsDataStore store = new StatsDataStore(vertx, items, NEVER);
+    store.create(new JsonObject().put("name", "Carrots").put("amount", 10)).blockingGet();
+    // another instance writes to the same table
+    items.create(new JsonObject().put("name", "Onions").put("amount", 30)).blockingGet();
+    assertEquals(1, (int) store.stats(0).blockingGet().getInteger("count"));
+
+    store.reconcile();
+
+    assertEquals(2, (int) store.stats(0).blockingGet().getInteger("count"));
+    JsonObject reconciliation = store.metrics().getJsonObject("stats").getJsonObject("lastReconciliation");
+    assertEquals(1L, (long) reconciliation.getLong("countDrift"));
+    assertEquals(30L, (long) reconciliation.getLong("amountDrift"));
+  }
+
+  @Test
+  public void testRebuildIsNotStartedTwice() {
+    items.hold();
+    StatsDataStore store = new StatsDataStore(vertx, items, NEVER);
+    store.reconcile();
+    items.release();
+
+    assertEquals(1L, (long) store.metrics().getJsonObject("stats").getLong("reconciliations"));
+  }
+}
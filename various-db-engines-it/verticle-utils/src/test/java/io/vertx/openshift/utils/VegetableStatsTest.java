@@ -0,0 +1,48 @@
+package io.vertx.openshift.utils;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class VegetableStatsTest {
+
+  @Test
+  public void testMaintainsAggregateThroughReplacesAndRemoves() {
+    VegetableStats stats = new VegetableStats();
+    stats.put(1, "Carrots", 10);
+    stats.put(2, "Onions", 30);
+    stats.put(3, "Carrots", 25);
+    stats.put(4, "Leeks", 5);
+    // replaced, then removed
+    stats.put(2, "Onions", 3);
+    stats.remove(4);
+    stats.remove(42);
+
+    JsonObject json = stats.toJson(2);
+    assertEquals(3, (int) json.getInteger("count"));
+    assertEquals(38, (long) json.getLong("totalAmount"));
+    assertEquals(3, (int) json.getInteger("minAmount"));
+    assertEquals(25, (int) json.getInteger("maxAmount"));
+    assertEquals(new JsonArray()
+        .add(new JsonObject().put("name", "Carrots").put("items", 2).put("amount", 35L))
+        .add(new JsonObject().put("name", "Onions").put("items", 1).put("amount", 3L)),
+      json.getJsonArray("top"));
+  }
+
+  @Test
+  public void testEmpty() {
+    VegetableStats stats = new VegetableStats();
+    stats.put(1, "Carrots", 10);
+    stats.remove(1);
+
+    JsonObject json = stats.toJson(5);
+    assertEquals(0, (int) json.getInteger("count"));
+    assertEquals(0, (long) json.getLong("totalAmount"));
+    assertNull(json.getInteger("minAmount"));
+    assertNull(json.getInteger("maxAmount"));
+    assertEquals(0, json.getJsonArray("top").size());
+  }
+}
@@ -0,0 +1,67 @@
+package io.vertx.openshift.utils.impl;
+
+import io.vertx.core.json.JsonObject;
+import io.vertx.openshift.utils.H2Database;
+import io.vertx.reactivex.core.Vertx;
+import io.vertx.reactivex.ext.jdbc.JDBCClient;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class CachedStatementJdbcVegetableStoreTest {
+
+  private Vertx vertx;
+  private H2Database database;
+  private JDBCClient client;
+  private CachedStatementJdbcVegetableStore store;
+
+  @Before
+  public void setUp() throws Exception {
+    vertx = Vertx.vertx();
+    database = new H2Database(vertx, "pinned");
+    database.createVegetables();
+    client = database.client();
+    store = new CachedStatementJdbcVegetableStore(vertx, client, database.dialect(), 1);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    // gives the pinned connections back before the pool is closed
+    store.close();
+    database.close();
+    vertx.close();
+  }
+
+  @Test
+  public void testPinsAnotherConnectionAfterAnSqlFailure() {
+    long id = store.create(new JsonObject().put("name", "Carrots")).blockingGet().getLong("id");
+
+    client.rxUpdate("DROP TABLE vegetables").blockingGet();
+    try {
+      store.read(id).blockingGet();
+      fail("The table is gone");
+    } catch (RuntimeException expected) {
+      // the statement cached on the pinned connection fails
+    }
+    client.rxUpdate(H2Database.CREATE_VEGETABLES).blockingGet();
+    long acquired = database.pool().metrics().getLong("acquired");
+
+    store.create(new JsonObject().put("name", "Onions")).blockingGet();
+    // the failed connection was given back, another one is pinned
+    assertEquals(acquired + 1, (long) database.pool().metrics().getLong("acquired"));
+  }
+
+  @Test
+  public void testCloseReleasesThePinnedConnections() throws InterruptedException {
+    store.create(new JsonObject().put("name", "Carrots")).blockingGet();
+    assertEquals(1, (int) database.pool().metrics().getInteger("active"));
+
+    store.close();
+    // the connections are closed asynchronously
+    database.awaitReleased();
+    assertEquals(0, (int) database.pool().metrics().getInteger("active"));
+  }
+}
@@ -0,0 +1,141 @@
+package io.vertx.openshift.utils.impl;
+
+import io.vertx.core.json.JsonObject;
+import io.vertx.openshift.utils.H2Database;
+import io.vertx.openshift.utils.SqlDialect;
+import io.vertx.openshift.utils.VegetableStats;
+import io.vertx.reactivex.core.Vertx;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class JdbcVegetableStoreTest {
+
+  private Vertx vertx;
+  private H2Database database;
+  private JdbcVegetableStore store;
+
+  @Before
+  public void setUp() throws Exception {
+    vertx = Vertx.vertx();
+    database = new H2Database(vertx, "store");
+    database.createVegetables();
+    store = new JdbcVegetableStore(database.client(), database.dialect());
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    database.close();
+    vertx.close();
+  }
+
+  @Test
+  public void testCreateReturnsTheInsertedRows() {
+    JsonObject created = store.create(new JsonObject().put("name", "Carrots")).blockingGet();
+    assertEquals(store.read(created.getLong("id")).blockingGet(), created);
+    assertEquals(0, (int) created.getInteger("amount"));
+    assertEquals(1L, (long) created.getLong("version"));
+
+    List<JsonObject> all = store.createAll(Arrays.asList(
+      new JsonObject().put("name", "Peas").put("amount", 3),
+      new JsonObject().put("name", "Beans").put("amount", 4))).blockingGet();
+    for (JsonObject item : all) {
+      assertEquals(store.read(item.getLong("id")).blockingGet(), item);
+    }
+  }
+
+  @Test
+  public void testCreateAllTakesTheIdsFromTheSequence() {
+    JdbcVegetableStore batched = new JdbcVegetableStore(database.client(), new SqlDialect() {
+      @Override
+      public boolean supports(String jdbcUrl) {
+        return true;
+      }
+
+      @Override
+      public String idSequenceQuery() {
+        return "SELECT sequence_name FROM information_schema.columns WHERE table_name = 'VEGETABLES' "
+          + "AND column_name = 'ID'";
+      }
+
+      @Override
+      public String nextIdsQuery(String sequence) {
+        return "SELECT NEXT VALUE FOR \"" + sequence + "\" FROM system_range(1, ?)";
+      }
+    });
+
+    long first = batched.create(new JsonObject().put("name", "Carrots")).blockingGet().getLong("id");
+    List<JsonObject> all = batched.createAll(Arrays.asList(
+      new JsonObject().put("name", "Peas").put("amount", 3),
+      new JsonObject().put("name", "Beans").put("amount", 4))).blockingGet();
+    assertEquals(2, all.size());
+    for (JsonObject item : all) {
+      assertTrue(item.getLong("id") > first);
+      assertEquals(batched.read(item.getLong("id")).blockingGet(), item);
+    }
+    // the rows inserted afterwards don't collide with the batch
+    assertTrue(batched.create(new JsonObject().put("name", "Leeks")).blockingGet().getLong("id")
+      > all.get(1).getLong("id"));
+  }
+
+  @Test
+  public void testStatsAreComputedByTheDatabase() {
+    store.createAll(Arrays.asList(
+      new JsonObject().put("name", "Carrots").put("amount", 10),
+      new JsonObject().put("name", "Onions").put("amount", 30),
+      new JsonObject().put("name", "Carrots").put("amount", 25),
+      new JsonObject().put("name", "Leeks"))).blockingGet();
+
+    VegetableStats expected = new VegetableStats();
+    store.readAll().blockingForEach(expected::put);
+    assertEquals(expected.toJson(2), store.stats(2).blockingGet());
+  }
+
+  @Test
+  public void testUpdatesOnlyTheExpectedVersion() {
+    long id = store.create(new JsonObject().put("name", "Carrots")).blockingGet().getLong("id");
+
+    assertEquals(2L, (long) store.update(id, new JsonObject().put("name", "Onions"), 1).blockingGet());
+    try {
+      store.update(id, new JsonObject().put("name", "Leeks"), 1).blockingGet();
+      fail("The stale version must be rejected");
+    } catch (ConcurrentModificationException expected) {
+      // the first update won
+    }
+    store.update(id, new JsonObject().put("name", "Tomatoes")).blockingAwait();
+
+    JsonObject item = store.read(id).blockingGet();
+    assertEquals("Tomatoes", item.getString("name"));
+    assertEquals(3L, (long) item.getLong("version"));
+  }
+
+  @Test
+  public void testUpsertCreatesThenReplaces() {
+    store.upsert(1000, new JsonObject().put("name", "Peas").put("amount", 1)).blockingAwait();
+    store.upsert(1000, new JsonObject().put("name", "Beans").put("amount", 2)).blockingAwait();
+
+    JsonObject item = store.read(1000).blockingGet();
+    assertEquals("Beans", item.getString("name"));
+    assertEquals(2, (int) item.getInteger("amount"));
+    assertEquals(2L, (long) item.getLong("version"));
+  }
+
+  @Test
+  public void testCreateAfterAnUpsertTakesAnotherId() {
+    store.upsert(1000, new JsonObject().put("name", "Peas").put("amount", 1)).blockingAwait();
+
+    JsonObject created = store.create(new JsonObject().put("name", "Beans")).blockingGet();
+    assertTrue(created.getLong("id") > 1000);
+    List<JsonObject> all = store.createAll(Arrays.asList(
+      new JsonObject().put("name", "Leeks"), new JsonObject().put("name", "Onions"))).blockingGet();
+    assertTrue(all.get(0).getLong("id") > created.getLong("id"));
+  }
+}